@@ -0,0 +1,63 @@
+package dev.rats159.lox.benchmarks;
+
+import dev.rats159.lox.errors.Diagnostics;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.lexing.Tokenizer;
+import dev.rats159.lox.parsing.Parser;
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+import dev.rats159.lox.resolving.Resolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each front-end stage on its own, fed the output of the stage before it, over generated sources of a few sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FrontendBenchmark {
+    @Param({"100", "1000"})
+    public int units;
+
+    private final Diagnostics diagnostics = new Diagnostics(new PrintStream(OutputStream.nullOutputStream()));
+    private String source;
+    private List<Token> tokens;
+    private List<Statement> statements;
+
+    @Setup
+    public void setUp() {
+        source = GeneratedSource.generate(units);
+        tokens = new Tokenizer(source, diagnostics).scanTokens();
+        statements = new Parser(tokens, diagnostics).parse();
+        new Resolver(new Resolution(), diagnostics).resolve(statements);
+
+        if (diagnostics.hadError()) {
+            throw new IllegalStateException("The generated source doesn't compile.");
+        }
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Tokenizer(source, diagnostics).scanTokens();
+    }
+
+    @Benchmark
+    public List<Statement> parse() {
+        return new Parser(tokens, diagnostics).parse();
+    }
+
+    @Benchmark
+    public Resolution resolve() {
+        Resolution resolution = new Resolution();
+        new Resolver(resolution, diagnostics).resolve(statements);
+        return resolution;
+    }
+}
@@ -0,0 +1,64 @@
+package dev.rats159.lox.benchmarks;
+
+/**
+ * Large, valid Lox programs for benchmarking the front end. The output only depends on {@code units}, so every run
+ * measures exactly the same source.
+ */
+final class GeneratedSource {
+    private GeneratedSource() {
+    }
+
+    /**
+     * A program with {@code units} each of a class, a function with nested scopes and loops, and a closure.
+     */
+    static String generate(int units) {
+        StringBuilder source = new StringBuilder(units * 700);
+        for (int i = 0; i < units; i++) {
+            source.append("""
+              class Shape# {
+                init(width, height) {
+                  this.width = width;
+                  this.height = height;
+                  this.name = "shape #";
+                }
+
+                area() {
+                  return this.width * this.height;
+                }
+
+                scale(factor) {
+                  this.width = this.width * factor;
+                  this.height = this.height * factor;
+                  return this;
+                }
+              }
+
+              fun compute#(n) {
+                var total = 0;
+                for (var i = 0; i < n; i = i + 1) {
+                  var shape = Shape#(i, i + 1);
+                  if (shape.area() > 10 and !(i == 3) or i <= 2) {
+                    total = total + shape.scale(2).area();
+                  } else {
+                    total = total - (i % 3) / 2;
+                  }
+                }
+                while (total > 1000) {
+                  total = total / 2;
+                }
+                return total;
+              }
+
+              fun makeAdder#(amount) {
+                fun add(x) {
+                  return x + amount + #;
+                }
+                return add;
+              }
+
+              var result# = makeAdder#(compute#(5))(-1);
+              """.replace("#", Integer.toString(i)));
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package dev.rats159.lox.benchmarks;
+
+import dev.rats159.lox.LoxContext;
+import dev.rats159.lox.LoxEngine;
+import dev.rats159.lox.PreparedScript;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each workload under {@code src/main/resources/workloads} in both execution modes. Scripts are prepared once,
+ * so only interpreting is measured, and their output is thrown away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class InterpreterBenchmark {
+    @Param({"fib", "binary_trees", "method_calls", "strings", "closures", "field_churn", "invariants"})
+    public String workload;
+
+    @Param({"tree", "stack"})
+    public String mode;
+
+    private LoxContext context;
+    private PreparedScript script;
+
+    @Setup
+    public void setUp() throws IOException {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        context = new LoxEngine().createContext(discard, System.err);
+        if (mode.equals("stack")) {
+            context.useStackInterpreter(1_000_000);
+        }
+
+        script = context.engine().prepare(load(workload), context.diagnostics());
+        if (script == null || !context.run(script)) {
+            throw new IllegalStateException("Workload " + workload + " failed.");
+        }
+    }
+
+    @Benchmark
+    public boolean run() {
+        return context.run(script);
+    }
+
+    private static String load(String workload) throws IOException {
+        try (InputStream in = InterpreterBenchmark.class.getResourceAsStream("/workloads/" + workload + ".lox")) {
+            if (in == null) {
+                throw new IOException("No workload named " + workload + ".");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
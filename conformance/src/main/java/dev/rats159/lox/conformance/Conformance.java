@@ -0,0 +1,227 @@
+package dev.rats159.lox.conformance;
+
+import dev.rats159.lox.LoxContext;
+import dev.rats159.lox.LoxEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Runs every program in a corpus directory under each execution mode and checks that what it prints matches the
+ * expected output exactly. For a program `name.lox`, `name.out` holds what it should print and `name.err` what it
+ * should report, if anything; a missing `name.err` means it must report nothing.
+ * <p>
+ * Each program is also timed, and its fastest run compared with a baseline file of `name mode nanoseconds` lines
+ * written by an earlier `--record` run. The fastest run is the one least disturbed by whatever else the machine was
+ * doing, so it moves less between runs of the harness than the median does. A program that has slowed down by more
+ * than the threshold fails the run, unless it lost less time than timing noise could account for.
+ */
+public final class Conformance {
+    /**
+     * How much slower a program can get through JIT, GC and scheduling noise alone, however fast it is.
+     */
+    private static final long NOISE_FLOOR = Duration.ofMillis(5).toNanos();
+
+    /**
+     * Long enough for every program in the corpus; only here so a program that hangs in one mode fails instead.
+     */
+    private static final Duration TIME_LIMIT = Duration.ofMinutes(1);
+
+    private enum Mode {
+        TREE("tree"),
+        STACK("stack");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        void configure(LoxContext context) {
+            if (this == STACK) {
+                context.useStackInterpreter(1_000_000);
+            }
+        }
+    }
+
+    private record Result(String out, String err, long nanos) {
+    }
+
+    private Conformance() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path corpus = null;
+        Path baselineFile = null;
+        boolean record = false;
+        double threshold = 0.25;
+        int warmups = 3;
+        int runs = 5;
+
+        for (String arg : args) {
+            if (arg.startsWith("--baseline=")) {
+                baselineFile = Path.of(arg.substring("--baseline=".length()));
+            } else if (arg.equals("--record")) {
+                record = true;
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Integer.parseInt(arg.substring("--threshold=".length())) / 100.0;
+            } else if (arg.startsWith("--warmups=")) {
+                warmups = Integer.parseInt(arg.substring("--warmups=".length()));
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--") || corpus != null) {
+                Conformance.usage();
+            } else {
+                corpus = Path.of(arg);
+            }
+        }
+        if (corpus == null || runs <= 0 || warmups < 0) {
+            Conformance.usage();
+        }
+        if (baselineFile == null) {
+            baselineFile = corpus.resolveSibling("baseline.txt");
+        }
+
+        Map<String, Long> baseline = record ? new TreeMap<>() : Conformance.readBaseline(baselineFile);
+        Map<String, Long> timings = new TreeMap<>();
+        int failures = 0;
+
+        for (Path program : Conformance.programs(corpus)) {
+            String name = program.getFileName().toString().replaceFirst("\\.lox$", "");
+            String source = Files.readString(program);
+            String expectedOut = Conformance.expected(program, ".out");
+            String expectedErr = Conformance.expected(program, ".err");
+
+            for (Mode mode : Mode.values()) {
+                String key = name + " " + mode.label;
+                long[] nanos = new long[runs];
+                String failure = null;
+
+                for (int i = 0; i < warmups + runs && failure == null; i++) {
+                    Result result = Conformance.run(source, mode);
+                    if (!result.out.equals(expectedOut)) {
+                        failure = "output differs: " + Conformance.difference(expectedOut, result.out);
+                    } else if (!result.err.equals(expectedErr)) {
+                        failure = "errors differ: " + Conformance.difference(expectedErr, result.err);
+                    } else if (i >= warmups) {
+                        nanos[i - warmups] = result.nanos;
+                    }
+                }
+
+                if (failure != null) {
+                    System.out.printf("FAIL %-32s %s\n", key, failure);
+                    failures++;
+                    continue;
+                }
+
+                long fastest = Arrays.stream(nanos).min().orElseThrow();
+                timings.put(key, fastest);
+
+                Long before = baseline.get(key);
+                if (before == null) {
+                    System.out.printf("ok   %-32s %9.2f ms\n", key, fastest / 1e6);
+                } else if (fastest > before * (1 + threshold) && fastest - before > NOISE_FLOOR) {
+                    System.out.printf("SLOW %-32s %9.2f ms, was %.2f ms (%+.0f%%)\n", key, fastest / 1e6, before / 1e6,
+                      (fastest - before) * 100.0 / before);
+                    failures++;
+                } else {
+                    System.out.printf("ok   %-32s %9.2f ms, was %.2f ms (%+.0f%%)\n", key, fastest / 1e6, before / 1e6,
+                      (fastest - before) * 100.0 / before);
+                }
+            }
+        }
+
+        if (record) {
+            Conformance.writeBaseline(baselineFile, timings);
+            System.out.printf("Recorded %d timings in %s.\n", timings.size(), baselineFile);
+        }
+
+        if (failures > 0) {
+            System.out.printf("%d failed.\n", failures);
+            System.exit(1);
+        }
+        System.out.println("All passed.");
+    }
+
+    private static void usage() {
+        System.err.println("Usage: conformance [--baseline=FILE] [--record] [--threshold=PERCENT] [--warmups=N] [--runs=N] corpus");
+        System.exit(2);
+    }
+
+    private static List<Path> programs(Path corpus) throws IOException {
+        try (Stream<Path> files = Files.list(corpus)) {
+            return files.filter(file -> file.toString().endsWith(".lox")).sorted().toList();
+        }
+    }
+
+    private static String expected(Path program, String extension) throws IOException {
+        Path file = program.resolveSibling(program.getFileName().toString().replaceFirst("\\.lox$", extension));
+        return Files.exists(file) ? Files.readString(file) : "";
+    }
+
+    /**
+     * Runs {@code source} in a fresh context, so no run sees the globals an earlier one left behind.
+     */
+    private static Result run(String source, Mode mode) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        LoxContext context = new LoxEngine().createContext(
+          new PrintStream(out, false, StandardCharsets.UTF_8),
+          new PrintStream(err, false, StandardCharsets.UTF_8)
+        );
+        mode.configure(context);
+        context.setTimeLimit(TIME_LIMIT);
+
+        long start = System.nanoTime();
+        context.run(source);
+        long nanos = System.nanoTime() - start;
+
+        return new Result(out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8), nanos);
+    }
+
+    /**
+     * The first line where {@code actual} departs from {@code expected}, for pointing at a mismatch.
+     */
+    private static String difference(String expected, String actual) {
+        String[] expectedLines = expected.split("\n", -1);
+        String[] actualLines = actual.split("\n", -1);
+        int line = 0;
+        while (line < expectedLines.length && line < actualLines.length
+          && expectedLines[line].equals(actualLines[line])) {
+            line++;
+        }
+
+        String wanted = line < expectedLines.length ? "\"" + expectedLines[line] + "\"" : "end of output";
+        String got = line < actualLines.length ? "\"" + actualLines[line] + "\"" : "end of output";
+        return "line %d expected %s, got %s".formatted(line + 1, wanted, got);
+    }
+
+    private static Map<String, Long> readBaseline(Path file) throws IOException {
+        Map<String, Long> baseline = new HashMap<>();
+        if (!Files.exists(file)) {
+            System.out.printf("No baseline at %s; timings won't be checked.\n", file);
+            return baseline;
+        }
+
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length == 3) {
+                baseline.put(parts[0] + " " + parts[1], Long.parseLong(parts[2]));
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Path file, Map<String, Long> timings) throws IOException {
+        List<String> lines = new ArrayList<>();
+        timings.forEach((key, nanos) -> lines.add(key + " " + nanos));
+        Files.write(file, lines);
+    }
+}
@@ -1,113 +1,155 @@
 package dev.rats159.lox;
 
-import dev.rats159.lox.interpreting.Interpreter;
-import dev.rats159.lox.errors.LoxRuntimeError;
-import dev.rats159.lox.lexing.Token;
-import dev.rats159.lox.lexing.TokenType;
-import dev.rats159.lox.lexing.Tokenizer;
-import dev.rats159.lox.parsing.Parser;
-import dev.rats159.lox.parsing.Statement;
-import dev.rats159.lox.resolving.Resolver;
+import dev.rats159.lox.interpreting.AllocationProfiler;
+import dev.rats159.lox.interpreting.Profiler;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
+    /**
+     * How many Lox calls deep `--stack` lets a program go. Each frame costs a few hundred bytes of heap.
+     */
+    private static final int DEFAULT_MAX_DEPTH = 1_000_000;
 
-    private static boolean hadError = false;
-    private static boolean hadRuntimeError = false;
+    /**
+     * How many samples a second `--profile` takes unless told otherwise with `--profile-rate`.
+     */
+    private static final int DEFAULT_PROFILE_RATE = 1000;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.err.println("Usage: jlox [filename]");
-            System.exit(1);
-        } else if (args.length == 1) {
-            try {
-                Lox.runFile(args[0]);
-            } catch (FileNotFoundException e) {
-                System.err.printf("File %s could not be found.\n", args[0]);
-                throw new RuntimeException(e);
+        List<String> files = new ArrayList<>();
+        int maxDepth = -1;
+        long fuel = -1;
+        Duration timeLimit = null;
+        long heapLimit = -1;
+        String profile = null;
+        int profileRate = DEFAULT_PROFILE_RATE;
+        String allocationReport = null;
+        boolean jmx = false;
+        Stats stats = null;
+
+        for (String arg : args) {
+            if (arg.equals("--stack")) {
+                maxDepth = Math.max(maxDepth, DEFAULT_MAX_DEPTH);
+            } else if (arg.startsWith("--max-depth=")) {
+                maxDepth = Integer.parseInt(arg.substring("--max-depth=".length()));
+            } else if (arg.startsWith("--fuel=")) {
+                fuel = Long.parseLong(arg.substring("--fuel=".length()));
+            } else if (arg.startsWith("--timeout=")) {
+                timeLimit = Duration.ofMillis(Long.parseLong(arg.substring("--timeout=".length())));
+            } else if (arg.startsWith("--heap-limit=")) {
+                heapLimit = Long.parseLong(arg.substring("--heap-limit=".length()));
+            } else if (arg.startsWith("--profile=")) {
+                profile = arg.substring("--profile=".length());
+            } else if (arg.startsWith("--profile-rate=")) {
+                profileRate = Integer.parseInt(arg.substring("--profile-rate=".length()));
+            } else if (arg.startsWith("--allocations=")) {
+                allocationReport = arg.substring("--allocations=".length());
+            } else if (arg.equals("--stats")) {
+                stats = new Stats();
+            } else if (arg.equals("--jmx")) {
+                jmx = true;
+            } else if (arg.startsWith("--")) {
+                Lox.usage();
+            } else {
+                files.add(arg);
             }
-        } else {
-            Lox.enterRepl();
         }
-    }
-
-    private static void runFile(String location) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(location));
-        Lox.run(new String(bytes, Charset.defaultCharset()));
 
-        if (Lox.hadError) {
-            System.exit(-1);
+        LoxContext context = new LoxEngine().createContext();
+        if (maxDepth > 0) {
+            context.useStackInterpreter(maxDepth);
         }
-
-        if (Lox.hadRuntimeError) {
-            System.exit(-1);
+        context.setFuel(fuel);
+        context.setTimeLimit(timeLimit);
+        context.setHeapLimit(heapLimit);
+        if (jmx) {
+            context.registerMetrics();
         }
-    }
 
-    private static void enterRepl() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
-
-        for (; ; ) {
-            System.out.print("> ");
-            String line = reader.readLine();
-            if (line == null) break;
-            Lox.run(line);
-            Lox.hadError = false;
+        Profiler profiler = null;
+        if (profile != null) {
+            profiler = new Profiler(profileRate);
+            context.profile(profiler);
+            profiler.start();
         }
-    }
-
-    private static void run(String source) {
-        Tokenizer scanner = new Tokenizer(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
 
-        List<Statement> statements = parser.parse();
+        AllocationProfiler allocations = null;
+        if (allocationReport != null) {
+            allocations = new AllocationProfiler();
+            context.trackAllocations(allocations);
+        }
 
-        if (Lox.hadError) {
-            return;
+        boolean succeeded = true;
+        if (files.size() > 1) {
+            Lox.usage();
+        } else if (files.size() == 1) {
+            try {
+                succeeded = Lox.runFile(context, files.getFirst(), stats);
+            } catch (FileNotFoundException e) {
+                System.err.printf("File %s could not be found.\n", files.getFirst());
+                throw new RuntimeException(e);
+            }
+        } else {
+            Lox.enterRepl(context, stats);
         }
 
-        Resolver resolver = new Resolver(Lox.interpreter);
-        resolver.resolve(statements);
+        if (profiler != null) {
+            profiler.stop();
+            try (PrintStream out = new PrintStream(profile, Charset.defaultCharset())) {
+                profiler.writeCollapsed(out);
+            }
+        }
 
-        if (Lox.hadError) {
-            return;
+        if (allocations != null) {
+            try (PrintStream out = new PrintStream(allocationReport, Charset.defaultCharset())) {
+                allocations.writeReport(out);
+            }
         }
 
-        Lox.interpreter.interpret(statements);
+        if (stats != null) {
+            stats.report(System.err);
+        }
 
+        if (!succeeded) {
+            System.exit(-1);
+        }
     }
 
-    public static void error(int line, String message) {
-        report(line, "", message);
+    private static void usage() {
+        System.err.println("Usage: jlox [--stack] [--max-depth=N] [--fuel=N] [--timeout=MS] [--heap-limit=BYTES] [--profile=FILE] [--profile-rate=HZ] [--allocations=FILE] [--jmx] [--stats] [filename]");
+        System.exit(1);
     }
 
-    private static void report(int line, String where, String message) {
-        System.err.printf("[line %d] Error%s: %s\n", line, where, message);
-        hadError = true;
+    private static boolean runFile(LoxContext context, String location, Stats stats) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(location));
+
+        return run(context, new String(bytes, Charset.defaultCharset()), stats);
     }
 
-    public static void error(Token token, String message) {
-        if (token.type() == TokenType.EOF) {
-            report(token.line(), " at end", message);
-        } else {
-            report(token.line(), " at '%s'".formatted(token.lexeme()), message);
-        }
+    private static boolean run(LoxContext context, String source, Stats stats) {
+        return stats == null ? context.run(source) : context.run(source, stats);
     }
 
-    public static void runtimeError(LoxRuntimeError error) {
-        System.err.printf("%s\n[line %d]\n", error.getMessage(), error.token.line());
-        Lox.hadRuntimeError = true;
+    private static void enterRepl(LoxContext context, Stats stats) throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
+
+        for (; ; ) {
+            System.out.print("> ");
+            String line = reader.readLine();
+            if (line == null) break;
+            run(context, line, stats);
+        }
     }
 }
@@ -0,0 +1,292 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.Diagnostics;
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.interpreting.Allocation;
+import dev.rats159.lox.interpreting.AllocationProfiler;
+import dev.rats159.lox.interpreting.Heap;
+import dev.rats159.lox.interpreting.Interpreter;
+import dev.rats159.lox.interpreting.Profiler;
+import dev.rats159.lox.interpreting.StackInterpreter;
+import dev.rats159.lox.interpreting.Watchdog;
+import dev.rats159.lox.metrics.LoxMetrics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An isolated place to run Lox code. Globals defined by one {@link #run} are visible to the next, like lines in the
+ * REPL, but nothing is shared with other contexts. A context must only be used by one thread at a time; use one
+ * context per thread to run scripts concurrently.
+ * <p>
+ * Scripts can start {@link LoxIsolate isolates}, each running in a new context on its own thread, with `isolate`.
+ * Isolates run within the budget of the run that started them, and stop when it is terminated or runs out.
+ */
+public class LoxContext {
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final LoxEngine engine;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Diagnostics diagnostics;
+    private final Interpreter interpreter;
+    private StackInterpreter stackInterpreter = null;
+    private int maxDepth = 0;
+    private long fuel = -1;
+    private Duration timeLimit = null;
+    private long heapLimit = -1;
+    private Profiler profiler = null;
+    private AllocationProfiler allocations = null;
+    private final LoxMetrics metrics;
+    private final PhaseListener compileTimer = new PhaseListener() {
+        private long started;
+
+        @Override
+        public void started(String phase) {
+            started = System.nanoTime();
+        }
+
+        @Override
+        public void finished(String phase) {
+            metrics.recordCompilePhase(phase, System.nanoTime() - started);
+        }
+    };
+
+    LoxContext(LoxEngine engine, PrintStream out, PrintStream err) {
+        this(engine, out, err, new Watchdog(), new Heap());
+    }
+
+    private LoxContext(LoxEngine engine, PrintStream out, PrintStream err, Watchdog watchdog, Heap heap) {
+        this.engine = engine;
+        this.out = out;
+        this.err = err;
+        this.diagnostics = new Diagnostics(err);
+        this.interpreter = new Interpreter(diagnostics, out, watchdog, heap);
+        this.metrics = new LoxMetrics(interpreter.counters());
+
+        define("isolate", LoxBuiltin.of("isolate", 1, (interpreter, args) -> isolate(args.getFirst())));
+        define("intern", LoxBuiltin.of("intern", 1, (interpreter, args) -> {
+            if (!(args.getFirst() instanceof LoxString string)) {
+                throw new LoxBuiltinError("Can only intern strings.");
+            }
+            LoxString interned = engine.strings().intern(string);
+            if (interned != string) { // Maybe a new copy, which the table keeps for as long as the script uses it
+                interpreter.allocate(Allocation.STRING, Heap.STRING + interned.length());
+            }
+            return interned;
+        }));
+        define("terminate", LoxBuiltin.of("terminate", 1, (interpreter, args) -> {
+            if (!(args.getFirst() instanceof LoxIsolate isolate)) {
+                throw new LoxBuiltinError("Can only terminate isolates.");
+            }
+            isolate.terminate();
+            return null;
+        }));
+    }
+
+    public LoxEngine engine() {
+        return engine;
+    }
+
+    public Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Runs later scripts on the {@link StackInterpreter}, allowing Lox calls to nest {@code maxDepth} deep.
+     */
+    public void useStackInterpreter(int maxDepth) {
+        this.stackInterpreter = new StackInterpreter(interpreter, maxDepth);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Limits each later run to passing {@code fuel} safepoints (loop iterations and function calls, counted across
+     * all of its tasks and isolates). A negative number removes the limit.
+     */
+    public void setFuel(long fuel) {
+        this.fuel = fuel;
+    }
+
+    /**
+     * Limits each later run to {@code timeLimit} of wall-clock time, or removes the limit if it is null.
+     */
+    public void setTimeLimit(Duration timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Limits each later run to allocating roughly {@code bytes} of strings, instances, functions, environments and
+     * lists. A negative number removes the limit.
+     */
+    public void setHeapLimit(long bytes) {
+        this.heapLimit = bytes;
+    }
+
+    /**
+     * Lets {@code profiler} sample everything this context runs from now on, including its tasks and isolates. The
+     * caller starts and stops the profiler.
+     */
+    public void profile(Profiler profiler) {
+        this.profiler = profiler;
+        interpreter.profile(profiler);
+    }
+
+    /**
+     * Reports every allocation this context makes from now on to {@code allocations}, including those of its tasks
+     * and isolates.
+     */
+    public void trackAllocations(AllocationProfiler allocations) {
+        this.allocations = allocations;
+        interpreter.trackAllocations(allocations);
+    }
+
+    /**
+     * Roughly how many bytes the current or most recent run has allocated.
+     */
+    public long allocatedBytes() {
+        return interpreter.heap().allocated();
+    }
+
+    /**
+     * Stops whatever this context is running, and every isolate it started, as soon as they reach a safepoint. Can be
+     * called from any thread; once terminated, a context can't run anything else.
+     */
+    public void terminate() {
+        interpreter.watchdog().terminate("Terminated.");
+    }
+
+    public LoxMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes this context's {@link #metrics()} visible in JMX under a name unique to this JVM, which is returned.
+     */
+    public ObjectName registerMetrics() {
+        try {
+            ObjectName name = new ObjectName("dev.rats159.lox:type=Context,name=context-" + ids.incrementAndGet());
+            metrics.register(name);
+            return name;
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Takes this context's metrics back out of JMX, so a context that is done with can be collected.
+     */
+    public void unregisterMetrics() {
+        metrics.unregister();
+    }
+
+    public void define(String name, LoxObject value) {
+        interpreter.globals.define(name, value);
+    }
+
+    /**
+     * Compiles and runs {@code source}. Errors are reported to this context's error stream, and {@link #diagnostics()}
+     * describes the most recent run.
+     *
+     * @return whether the source compiled and ran without errors
+     */
+    public boolean run(String source) {
+        diagnostics.reset();
+
+        PreparedScript script = engine.prepare(source, diagnostics, compileTimer);
+        return script != null && execute(script);
+    }
+
+    /**
+     * Like {@link #run(String)}, telling {@code listener} about each phase as it goes.
+     */
+    public boolean run(String source, PhaseListener listener) {
+        diagnostics.reset();
+
+        PreparedScript script = engine.prepare(source, diagnostics, compileTimer.andThen(listener));
+        if (script == null) {
+            return false;
+        }
+
+        listener.started("interpret");
+        try {
+            return execute(script);
+        } finally {
+            listener.finished("interpret");
+        }
+    }
+
+    /**
+     * Runs a script prepared by this context's engine against this context's globals.
+     *
+     * @return whether the script ran without errors
+     */
+    public boolean run(PreparedScript script) {
+        diagnostics.reset();
+        return execute(script);
+    }
+
+    /**
+     * Starts an isolate running either a string of source code or a function declared at the top level of a script.
+     * A function only sees the builtins and its own parameters; it can't use the other declarations of the script it
+     * came from. Either way the isolate can talk to this script through its global `parent` port. The isolate has no
+     * limits of its own: it draws on this run's fuel, time and heap.
+     */
+    private LoxIsolate isolate(LoxObject code) {
+        LoxContext child = new LoxContext(engine, out, err, interpreter.watchdog().child(), interpreter.heap().child());
+        if (maxDepth > 0) {
+            child.useStackInterpreter(maxDepth);
+        }
+        if (profiler != null) {
+            child.profile(profiler);
+        }
+        if (allocations != null) {
+            child.trackAllocations(allocations);
+        }
+
+        LoxPort[] ports = LoxPort.pair(LoxIsolate.CAPACITY);
+        child.define("parent", ports[1]);
+
+        if (code instanceof LoxString source) {
+            return new LoxIsolate(child, ports[0], () -> child.run(source.toLangString())).start();
+        }
+
+        if (code instanceof LoxFunction function && function.arity() == 0 && function.closure().enclosing == null) {
+            LoxFunction copy = new LoxFunction(function.declaration(), child.interpreter.globals, false, function.resolution());
+            return new LoxIsolate(child, ports[0], () -> {
+                child.diagnostics.reset();
+                child.interpreter.watchdog().start(child.fuel, child.timeLimit);
+                child.interpreter.heap().start(child.heapLimit);
+                child.interpreter.interpret(copy);
+                child.interpreter.reportFailedTasks();
+                return !child.diagnostics.hadRuntimeError();
+            }).start();
+        }
+
+        throw new LoxBuiltinError("Isolates run source code or top-level functions that take no arguments.");
+    }
+
+    private boolean execute(PreparedScript script) {
+        long started = System.nanoTime();
+        interpreter.watchdog().start(fuel, timeLimit);
+        interpreter.heap().start(heapLimit);
+        if (stackInterpreter != null) {
+            stackInterpreter.interpret(script.statements(), script.resolution());
+        } else {
+            interpreter.interpret(script.statements(), script.resolution());
+        }
+        interpreter.reportFailedTasks();
+        metrics.recordExecution(System.nanoTime() - started);
+
+        if (diagnostics.hadRuntimeError()) {
+            metrics.recordRuntimeError();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.constructs.StringTable;
+import dev.rats159.lox.errors.Diagnostics;
+import dev.rats159.lox.events.CompileEvent;
+import dev.rats159.lox.events.LoxEvents;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.lexing.Tokenizer;
+import dev.rats159.lox.optimizing.LoopOptimizer;
+import dev.rats159.lox.optimizing.SuperinstructionFuser;
+import dev.rats159.lox.parsing.Parser;
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+import dev.rats159.lox.resolving.Resolver;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for embedding Lox. An engine holds no per-script state, so one can be shared by any number of threads;
+ * each script runs in a {@link LoxContext} with its own globals, diagnostics and output.
+ */
+public class LoxEngine {
+    private final StringTable strings = new StringTable();
+
+    public LoxContext createContext() {
+        return createContext(System.out, System.err);
+    }
+
+    public LoxContext createContext(PrintStream out, PrintStream err) {
+        return new LoxContext(this, out, err);
+    }
+
+    /**
+     * Where the string literals of every script this engine prepares, and whatever scripts `intern`, are interned.
+     */
+    public StringTable strings() {
+        return strings;
+    }
+
+    /**
+     * Does all the work of running {@code source} that doesn't depend on a context, so it only has to be done once.
+     *
+     * @return the prepared script, or null if there were compile errors, which are reported to {@code diagnostics}
+     */
+    public PreparedScript prepare(String source, Diagnostics diagnostics) {
+        return prepare(source, diagnostics, PhaseListener.NONE);
+    }
+
+    /**
+     * Like {@link #prepare(String, Diagnostics)}, telling {@code listener} about each phase as it goes.
+     */
+    public PreparedScript prepare(String source, Diagnostics diagnostics, PhaseListener listener) {
+        List<Token> tokens = phase("tokenize", listener, () -> new Tokenizer(source, diagnostics, strings).scanTokens());
+        listener.scanned(tokens);
+        List<Statement> parsed = phase("parse", listener, () -> new Parser(tokens, diagnostics).parse());
+        listener.parsed(parsed);
+
+        if (diagnostics.hadError()) {
+            return null;
+        }
+
+        List<Statement> statements = phase("optimize", listener, () ->
+          new SuperinstructionFuser().rewrite(new LoopOptimizer().optimize(parsed)));
+
+        Resolution resolution = phase("resolve", listener, () -> {
+            Resolution resolved = new Resolution();
+            new Resolver(resolved, diagnostics).resolve(statements);
+            return resolved;
+        });
+
+        if (diagnostics.hadError()) {
+            return null;
+        }
+
+        return new PreparedScript(statements, resolution);
+    }
+
+    private static <T> T phase(String name, PhaseListener listener, Supplier<T> body) {
+        listener.started(name);
+        CompileEvent event = LoxEvents.compile();
+        T result = body.get();
+        LoxEvents.compiled(event, name, "script", 0);
+        listener.finished(name);
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.interpreting.Watchdog;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A script running in a {@link LoxContext} of its own, on its own thread, made by `isolate`. It shares no values with
+ * the script that started it: the two can only talk by sending copies of values through this object and the
+ * isolate's `parent` port. It does share that script's fuel, time and heap, and stops when that script is terminated
+ * or runs out of any of them; terminating an isolate only stops that isolate. Once the isolate has finished, for
+ * whatever reason, the ports between the two are closed, so neither side waits for the other forever.
+ */
+final class LoxIsolate implements LoxMailbox, LoxJoinable {
+    /**
+     * How many messages can wait in each direction before senders have to wait.
+     */
+    static final int CAPACITY = 64;
+
+    private final LoxContext context;
+    private final LoxPort port;
+    private final Thread thread;
+    private volatile boolean succeeded = false;
+
+    LoxIsolate(LoxContext context, LoxPort port, BooleanSupplier body) {
+        this.context = context;
+        this.port = port;
+        this.thread = Thread.ofPlatform().name("lox-isolate").daemon().unstarted(() -> {
+            try {
+                succeeded = body.getAsBoolean();
+            } finally {
+                port.close("The isolate has finished.");
+            }
+        });
+    }
+
+    LoxIsolate start() {
+        thread.start();
+        return this;
+    }
+
+    void terminate() {
+        context.terminate();
+        thread.interrupt();
+    }
+
+    @Override
+    public void send(LoxObject value, Watchdog watchdog) {
+        port.send(value, watchdog);
+    }
+
+    @Override
+    public LoxObject receive(Watchdog watchdog) {
+        return port.receive(watchdog);
+    }
+
+    /**
+     * Waits for the isolate's script to finish, returning whether it ran without errors.
+     */
+    @Override
+    public LoxObject join(Watchdog watchdog) {
+        try {
+            watchdog.await(millis -> thread.join(Duration.ofMillis(millis)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoxBuiltinError("Interrupted while joining an isolate.");
+        }
+        return new LoxBoolean(succeeded);
+    }
+
+    @Override
+    public String toLangString() {
+        return "<isolate>";
+    }
+
+    @Override
+    public String type() {
+        return "isolate";
+    }
+
+    @Override
+    public boolean isTruthy() {
+        return true;
+    }
+}
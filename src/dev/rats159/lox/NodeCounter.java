@@ -0,0 +1,36 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.optimizing.AstRewriter;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+import java.util.List;
+
+/**
+ * Counts the statements and expressions in a syntax tree by walking it as a rewrite that changes nothing.
+ */
+final class NodeCounter extends AstRewriter {
+    private long count = 0;
+
+    static long count(List<Statement> statements) {
+        NodeCounter counter = new NodeCounter();
+        counter.rewrite(statements);
+        return counter.count;
+    }
+
+    @Override
+    protected Statement rewrite(Statement statement) {
+        if (statement != null) {
+            count++;
+        }
+        return super.rewrite(statement);
+    }
+
+    @Override
+    protected Expression rewrite(Expression expression) {
+        if (expression != null) {
+            count++;
+        }
+        return super.rewrite(expression);
+    }
+}
@@ -0,0 +1,66 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.parsing.Statement;
+
+import java.util.List;
+
+/**
+ * Told when each phase of running a script starts and finishes: {@link LoxEngine#prepare} goes through `tokenize`,
+ * `parse`, `optimize` and `resolve`, and {@link LoxContext#run(String, PhaseListener)} adds `interpret`. Phases run
+ * one after another on the calling thread.
+ */
+public interface PhaseListener {
+    PhaseListener NONE = new PhaseListener() {
+    };
+
+    default void started(String phase) {
+    }
+
+    default void finished(String phase) {
+    }
+
+    /**
+     * Called with the tokens once `tokenize` has finished.
+     */
+    default void scanned(List<Token> tokens) {
+    }
+
+    /**
+     * Called with the syntax tree, before it is optimized, once `parse` has finished.
+     */
+    default void parsed(List<Statement> statements) {
+    }
+
+    /**
+     * A listener that tells this one about everything, then {@code other}.
+     */
+    default PhaseListener andThen(PhaseListener other) {
+        PhaseListener first = this;
+        return new PhaseListener() {
+            @Override
+            public void started(String phase) {
+                first.started(phase);
+                other.started(phase);
+            }
+
+            @Override
+            public void finished(String phase) {
+                first.finished(phase);
+                other.finished(phase);
+            }
+
+            @Override
+            public void scanned(List<Token> tokens) {
+                first.scanned(tokens);
+                other.scanned(tokens);
+            }
+
+            @Override
+            public void parsed(List<Statement> statements) {
+                first.parsed(statements);
+                other.parsed(statements);
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+
+import java.util.List;
+
+/**
+ * A program that has already been tokenized, parsed, optimized and resolved. Nothing in it changes once it is built,
+ * so it can be run any number of times, by any number of {@link LoxContext}s on any number of threads; each run gets
+ * the globals and frames of the context running it.
+ */
+public final class PreparedScript {
+    private final List<Statement> statements;
+    private final Resolution resolution;
+
+    PreparedScript(List<Statement> statements, Resolution resolution) {
+        this.statements = List.copyOf(statements);
+        this.resolution = resolution;
+    }
+
+    List<Statement> statements() {
+        return statements;
+    }
+
+    Resolution resolution() {
+        return resolution;
+    }
+}
@@ -0,0 +1,87 @@
+package dev.rats159.lox;
+
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.parsing.Statement;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What `--stats` reports: how long each phase took and how much it allocated, added up over every script the CLI
+ * runs. Allocations are only those of the main thread, so tasks and parallel builtins don't show up in them.
+ */
+final class Stats implements PhaseListener {
+    private static final class Phase {
+        long nanos = 0;
+        long bytes = 0;
+    }
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private long startedNanos;
+    private long startedBytes;
+    private long tokens = 0;
+    private long nodes = 0;
+
+    Stats() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+          && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            this.threads = threads;
+        } else {
+            this.threads = null;
+        }
+    }
+
+    @Override
+    public void started(String phase) {
+        startedBytes = allocatedBytes();
+        startedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void finished(String phase) {
+        long nanos = System.nanoTime() - startedNanos;
+        long bytes = allocatedBytes() - startedBytes;
+
+        Phase totals = phases.computeIfAbsent(phase, ignored -> new Phase());
+        totals.nanos += nanos;
+        totals.bytes += bytes;
+    }
+
+    @Override
+    public void scanned(List<Token> tokens) {
+        this.tokens += tokens.size();
+    }
+
+    @Override
+    public void parsed(List<Statement> statements) {
+        this.nodes += NodeCounter.count(statements);
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    void report(PrintStream out) {
+        long nanos = 0;
+        long bytes = 0;
+
+        out.printf("%-10s %12s %16s%n", "phase", "time (ms)", "allocated (B)");
+        for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+            Phase phase = entry.getValue();
+            out.printf("%-10s %12.3f %16s%n", entry.getKey(), phase.nanos / 1e6, bytes(phase.bytes));
+            nanos += phase.nanos;
+            bytes += phase.bytes;
+        }
+        out.printf("%-10s %12.3f %16s%n", "total", nanos / 1e6, bytes(bytes));
+        out.printf("%d tokens, %d syntax tree nodes%n", tokens, nodes);
+    }
+
+    private String bytes(long bytes) {
+        return threads == null ? "n/a" : "%,d".formatted(bytes);
+    }
+}
@@ -13,7 +13,7 @@ public final class LoxBoolean implements LoxObject, LoxAddable, LoxMultipliable,
     public LoxAddable add(LoxAddable other) throws LoxTypeError{
         return switch(other){
             case LoxBoolean loxBoolean -> new LoxBoolean(this.value || loxBoolean.value);
-            case LoxString loxString -> new LoxString(this.toLangString() + loxString.value);
+            case LoxString loxString -> LoxString.concat(new LoxString(this.toLangString()), loxString);
             default -> throw new LoxTypeError("Unable to add types %s and %s".formatted(this.type(), other.type()));
         };
     }
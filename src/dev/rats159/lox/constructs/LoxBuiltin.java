@@ -1,12 +1,35 @@
 package dev.rats159.lox.constructs;
 
+import dev.rats159.lox.interpreting.Interpreter;
+
+import java.util.List;
+
 public abstract class LoxBuiltin implements LoxCallable{
+    @FunctionalInterface
+    public interface Body {
+        LoxObject call(Interpreter interpreter, List<LoxObject> args);
+    }
+
     protected int arity;
 
     public LoxBuiltin(int arity){
         this.arity = arity;
     }
 
+    public static LoxBuiltin of(String name, int arity, Body body) {
+        return new LoxBuiltin(arity) {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public LoxObject call(Interpreter interpreter, List<LoxObject> args) {
+                return body.call(interpreter, args);
+            }
+        };
+    }
+
     @Override
     public String toLangString() {
         return this.name();
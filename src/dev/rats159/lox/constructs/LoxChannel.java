@@ -0,0 +1,91 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.interpreting.Watchdog;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue for passing values between tasks. Sending to a full channel waits for a receiver, and receiving
+ * from an empty one waits for a sender; a channel with no capacity hands each value over directly. Once a channel is
+ * {@link #close closed}, sending fails, and so does receiving once whatever was sent before has been received.
+ */
+public final class LoxChannel implements LoxMailbox {
+    /**
+     * Stands in for nil, which the queue can't hold.
+     */
+    private static final LoxObject NIL = new LoxNil();
+
+    private final BlockingQueue<LoxObject> queue;
+    private volatile String closed = null;
+
+    public LoxChannel(int capacity) {
+        this.queue = capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Makes sending, and receiving once the channel is empty, fail with {@code reason}, including for anyone already
+     * waiting.
+     */
+    public void close(String reason) {
+        closed = reason;
+    }
+
+    @Override
+    public void send(LoxObject value, Watchdog watchdog) {
+        LoxObject item = value == null ? NIL : value;
+        try {
+            watchdog.await(millis -> {
+                checkOpen();
+                return queue.offer(item, millis, TimeUnit.MILLISECONDS);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoxBuiltinError("Interrupted while sending.");
+        }
+    }
+
+    @Override
+    public LoxObject receive(Watchdog watchdog) {
+        LoxObject[] received = new LoxObject[1];
+        try {
+            watchdog.await(millis -> {
+                String closed = this.closed; // Read first, so anything sent before closing is still received
+                received[0] = queue.poll(millis, TimeUnit.MILLISECONDS);
+                if (received[0] == null && closed != null) {
+                    throw new LoxBuiltinError(closed);
+                }
+                return received[0] != null;
+            });
+            return received[0] == NIL ? null : received[0];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoxBuiltinError("Interrupted while receiving.");
+        }
+    }
+
+    private void checkOpen() {
+        String closed = this.closed;
+        if (closed != null) {
+            throw new LoxBuiltinError(closed);
+        }
+    }
+
+    @Override
+    public String toLangString() {
+        return "<channel>";
+    }
+
+    @Override
+    public String type() {
+        return "channel";
+    }
+
+    @Override
+    public boolean isTruthy() {
+        return true;
+    }
+}
@@ -1,5 +1,9 @@
 package dev.rats159.lox.constructs;
 
+import dev.rats159.lox.events.InstantiationEvent;
+import dev.rats159.lox.events.LoxEvents;
+import dev.rats159.lox.interpreting.Allocation;
+import dev.rats159.lox.interpreting.Heap;
 import dev.rats159.lox.interpreting.Interpreter;
 
 import java.util.List;
@@ -7,12 +11,14 @@ import java.util.Map;
 
 public class LoxClass implements LoxCallable {
     public final String name;
+    public final int line;
     public final LoxClass superclass;
     private final Map<String, LoxFunction> methods;
 
 
-    public LoxClass(String name,LoxClass superclass, Map<String, LoxFunction> methods) {
+    public LoxClass(String name, int line, LoxClass superclass, Map<String, LoxFunction> methods) {
         this.name = name;
+        this.line = line;
         this.methods = methods;
         this.superclass = superclass;
     }
@@ -34,15 +40,37 @@ public class LoxClass implements LoxCallable {
         return null;
     }
 
+    /**
+     * Whether the class was declared at the top level of a script, so its methods can't see any function's locals.
+     */
+    public boolean isTopLevel() {
+        for (LoxFunction method : methods.values()) {
+            if (method.closure() != null && method.closure().enclosing != null) {
+                return false;
+            }
+        }
+        return superclass == null || superclass.isTopLevel();
+    }
+
+    public LoxInstance instantiate() {
+        return new LoxInstance(this);
+    }
+
     @Override
     public LoxObject call(Interpreter interpreter, List<LoxObject> args) {
-        LoxInstance instance = new LoxInstance(this);
+        InstantiationEvent event = LoxEvents.instantiation();
+
+        interpreter.allocate(Allocation.INSTANCE, Heap.INSTANCE);
+        LoxInstance instance = instantiate();
 
         LoxFunction initializer = findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, args);
+            interpreter.bind(initializer, instance).call(interpreter, args);
         }
 
+        if (event != null) {
+            event.finish(name, line);
+        }
         return instance;
     }
 
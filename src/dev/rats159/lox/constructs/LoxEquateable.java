@@ -1,6 +1,6 @@
 package dev.rats159.lox.constructs;
 
-public sealed interface LoxEquateable extends LoxObject permits LoxComparable, LoxNumber {
+public sealed interface LoxEquateable extends LoxObject permits LoxComparable, LoxNumber, LoxString {
     LoxBoolean equal(LoxEquateable other);
     LoxBoolean unequal(LoxEquateable other);
 }
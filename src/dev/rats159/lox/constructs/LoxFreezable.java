@@ -0,0 +1,59 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.errors.LoxBuiltinError;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A value `freeze` can make immutable. Freezing is deep: everything freezable reachable from the value is frozen too,
+ * and nothing that can change is allowed to be reachable at all.
+ */
+public interface LoxFreezable extends LoxObject {
+    void freeze();
+
+    boolean isFrozen();
+
+    /**
+     * The values this holds directly.
+     */
+    Iterable<LoxObject> contents();
+
+    /**
+     * Fails unless {@code value} can be frozen. Only numbers, strings, booleans, nil, lists and instances of classes
+     * declared at the top level can be, and only if they don't reach anything else. A function can't: whatever shares
+     * its closure can still change it, frozen or not. Checks everything before anything is frozen, so a freeze that
+     * fails leaves nothing half frozen.
+     */
+    static void checkFreezable(LoxObject value) {
+        Set<LoxObject> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<LoxObject> pending = new ArrayDeque<>();
+        pending.push(value);
+
+        while (!pending.isEmpty()) {
+            LoxObject next = pending.pop();
+            if (next instanceof LoxNumber || next instanceof LoxString || next instanceof LoxBoolean
+              || next instanceof LoxNil || !seen.add(next)) {
+                continue;
+            }
+
+            if (!(next instanceof LoxFreezable freezable)) {
+                throw next == value
+                  ? new LoxBuiltinError("Can't freeze a %s.".formatted(value.type()))
+                  : new LoxBuiltinError("Can't freeze this %s: it holds a %s.".formatted(value.type(), next.type()));
+            } else if (next instanceof LoxInstance instance && !instance.klass().isTopLevel()) {
+                throw new LoxBuiltinError("Can't freeze an instance of %s, which was declared inside a function."
+                  .formatted(instance.klass().name));
+            }
+
+            for (LoxObject content : freezable.contents()) {
+                if (content != null) {
+                    pending.push(content);
+                }
+            }
+        }
+    }
+}
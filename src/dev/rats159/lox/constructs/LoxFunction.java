@@ -1,8 +1,13 @@
 package dev.rats159.lox.constructs;
 
+import dev.rats159.lox.errors.LoxRuntimeError;
+import dev.rats159.lox.events.CallEvent;
+import dev.rats159.lox.events.LoxEvents;
 import dev.rats159.lox.interpreting.Interpreter;
+import dev.rats159.lox.interpreting.ShadowStack;
 import dev.rats159.lox.interpreting.VariableEnvironment;
 import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
 
 import java.util.List;
 
@@ -10,33 +15,113 @@ public class LoxFunction implements LoxCallable {
     private final Statement.Function decl;
     private final VariableEnvironment closure;
     private final boolean isInitializer;
+    private final Resolution resolution;
 
-    public LoxFunction(Statement.Function decl, VariableEnvironment closure, boolean isInitializer) {
+    public LoxFunction(Statement.Function decl, VariableEnvironment closure, boolean isInitializer, Resolution resolution) {
         this.isInitializer = isInitializer;
         this.decl = decl;
         this.closure = closure;
+        this.resolution = resolution;
     }
 
     @Override
     public LoxObject call(Interpreter interpreter, List<LoxObject> arguments) {
-        VariableEnvironment environment = new VariableEnvironment(this.closure);
-        for (int i = 0; i < this.decl.parameters().size(); i++) {
-            environment.define(this.decl.parameters().get(i).lexeme(), arguments.get(i));
-        }
+        return call(interpreter, this, this.closure, arguments);
+    }
+
+    /**
+     * Calls this method on {@code instance} without creating the bound function {@link #bind} would.
+     */
+    public LoxObject invoke(Interpreter interpreter, LoxInstance instance, List<LoxObject> arguments) {
+        return call(interpreter, this, receiver(instance), arguments);
+    }
 
-        try {
-            interpreter.executeBlock(this.decl.body(), environment);
-        } catch (LoxReturn returnValue) { // ... weird...
-            if(this.isInitializer){
-                return closure.getAt(0,"this");
+    /**
+     * A call to this function for a `return` in tail position to throw.
+     */
+    public LoxTailCall tailCall(List<LoxObject> arguments) {
+        return new LoxTailCall(this, this.closure, arguments);
+    }
+
+    /**
+     * A call to this method on {@code instance} for a `return` in tail position to throw.
+     */
+    public LoxTailCall tailInvoke(LoxInstance instance, List<LoxObject> arguments) {
+        return new LoxTailCall(this, receiver(instance), arguments);
+    }
+
+    private VariableEnvironment receiver(LoxInstance instance) {
+        VariableEnvironment environment = new VariableEnvironment(closure);
+        environment.define("this", instance);
+        return environment;
+    }
+
+    /**
+     * Runs the body, then keeps running whatever function it tail-calls until one of them actually returns.
+     */
+    private static LoxObject call(Interpreter interpreter, LoxFunction function, VariableEnvironment closure, List<LoxObject> arguments) {
+        ShadowStack shadow = interpreter.shadowStack();
+        while (true) {
+            interpreter.countCall();
+            interpreter.safepoint();
+
+            VariableEnvironment environment = interpreter.newEnvironment(closure);
+            for (int i = 0; i < function.decl.parameters().size(); i++) {
+                environment.define(function.decl.parameters().get(i).lexeme(), arguments.get(i));
             }
-            return returnValue.value;
-        }
 
-        if (isInitializer) {
-            return closure.getAt(0, "this");
+            // Taken now, since a tail call replaces function before the finally block runs
+            String name = function.decl.name().lexeme();
+            int line = function.decl.name().line();
+            if (shadow != null) {
+                shadow.push(name, line);
+            }
+            CallEvent event = LoxEvents.call();
+            try {
+                interpreter.executeBlock(function.decl.body(), environment, function.resolution);
+            } catch (LoxTailCall tailCall) {
+                function = tailCall.function;
+                closure = tailCall.closure;
+                arguments = tailCall.arguments;
+                continue;
+            } catch (LoxReturn returnValue) { // ... weird...
+                if (function.isInitializer) {
+                    return closure.getAt(0, "this");
+                }
+                return returnValue.value;
+            } catch (LoxRuntimeError error) {
+                error.raisedIn(name);
+                throw error;
+            } finally {
+                if (shadow != null) {
+                    shadow.pop();
+                }
+                if (event != null) {
+                    event.finish(name, line);
+                }
+            }
+
+            if (function.isInitializer) {
+                return closure.getAt(0, "this");
+            }
+            return null;
         }
-        return null;
+    }
+
+    public Statement.Function declaration() {
+        return this.decl;
+    }
+
+    public VariableEnvironment closure() {
+        return this.closure;
+    }
+
+    public boolean isInitializer() {
+        return this.isInitializer;
+    }
+
+    public Resolution resolution() {
+        return this.resolution;
     }
 
     @Override
@@ -50,9 +135,7 @@ public class LoxFunction implements LoxCallable {
     }
 
     public LoxFunction bind(LoxInstance loxInstance) {
-        VariableEnvironment environment = new VariableEnvironment(closure);
-        environment.define("this", loxInstance);
-        return new LoxFunction(this.decl, environment, this.isInitializer);
+        return new LoxFunction(this.decl, receiver(loxInstance), this.isInitializer, this.resolution);
 
     }
 
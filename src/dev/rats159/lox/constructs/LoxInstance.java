@@ -5,10 +5,18 @@ import dev.rats159.lox.lexing.Token;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class LoxInstance implements LoxObject{
+public class LoxInstance implements LoxFreezable {
     private final LoxClass klass;
-    private final Map<String, LoxObject> fields = new HashMap<>();
+    private final Map<String, Field> fields = new HashMap<>();
+
+    /**
+     * Set once the instance is frozen. Its fields can't change anymore, so they can be read from any thread, and
+     * bound methods are cached in {@link #bound} rather than made on every access.
+     */
+    private volatile boolean frozen = false;
+    private Map<String, LoxFunction> bound;
 
     LoxInstance(LoxClass klass) {
         this.klass = klass;
@@ -19,22 +27,140 @@ public class LoxInstance implements LoxObject{
         return klass.name + " instance";
     }
 
+    public LoxClass klass() {
+        return klass;
+    }
+
+    /**
+     * Where one field's value is kept. Compound assignments hold on to it from reading the field until they write it
+     * back, so the field is only looked up once, however much code runs in between. It is never a Lox value, but the
+     * stack interpreter keeps it on its stack in the meantime.
+     */
+    public static final class Field implements LoxObject {
+        private final LoxInstance owner;
+        private LoxObject value;
+        private boolean added;
+
+        private Field(LoxInstance owner, LoxObject value, boolean added) {
+            this.owner = owner;
+            this.value = value;
+            this.added = added;
+        }
+
+        public LoxObject value() {
+            return value;
+        }
+
+        /**
+         * Replaces the field's value, adding the field to its instance if it wasn't there when it was read.
+         */
+        public void store(Token name, LoxObject value) {
+            owner.checkNotFrozen(name);
+            this.value = value;
+            if (!added) {
+                owner.fields.put(name.lexeme(), this);
+                added = true;
+            }
+        }
+
+        @Override
+        public String toLangString() {
+            return "<field>";
+        }
+
+        @Override
+        public String type() {
+            return "field";
+        }
+
+        @Override
+        public boolean isTruthy() {
+            return true;
+        }
+    }
+
     public void set(Token name, LoxObject value) {
-        fields.put(name.lexeme(), value);
+        checkNotFrozen(name);
+        Field field = fields.get(name.lexeme());
+        if (field != null) {
+            field.value = value;
+        } else {
+            fields.put(name.lexeme(), new Field(this, value, true));
+        }
+    }
+
+    /**
+     * The field {@code name}, to read and later {@link Field#store write back}. If there is no such field yet, the
+     * one returned holds whatever {@link #get} reads, such as a bound method, and is only added when it is stored.
+     */
+    public Field field(Token name) {
+        Field field = fields.get(name.lexeme());
+        return field != null ? field : new Field(this, get(name), false);
     }
 
     public LoxObject get(Token name) {
-        if (fields.containsKey(name.lexeme())) {
-            return fields.get(name.lexeme());
+        Field field = fields.get(name.lexeme());
+        if (field != null) {
+            return field.value;
         }
 
         LoxFunction method = klass.findMethod(name.lexeme());
+        if (method != null && frozen) return bound.computeIfAbsent(name.lexeme(), ignored -> method.bind(this));
         if (method != null) return method.bind(this);
 
         throw new LoxRuntimeError(name,
                 "Undefined property '" + name.lexeme() + "'.");
     }
 
+    /**
+     * Whether reading {@code name} would hand out a bound method this frozen instance has already cached.
+     */
+    public boolean hasBoundMethod(String name) {
+        return frozen && bound.containsKey(name);
+    }
+
+    /**
+     * The method {@code name} would resolve to, or null if there is no such method or a field hides it.
+     */
+    public LoxFunction findMethod(String name) {
+        if (fields.containsKey(name)) {
+            return null;
+        }
+
+        return klass.findMethod(name);
+    }
+
+    @Override
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+
+        bound = new ConcurrentHashMap<>();
+        frozen = true;
+        for (Field field : fields.values()) {
+            if (field.value instanceof LoxFreezable freezable) {
+                freezable.freeze();
+            }
+        }
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    @Override
+    public Iterable<LoxObject> contents() {
+        return fields.values().stream().map(Field::value).toList();
+    }
+
+    private void checkNotFrozen(Token name) {
+        if (frozen) {
+            throw new LoxRuntimeError(name, "Can't change field '%s' of a frozen instance.".formatted(name.lexeme()));
+        }
+    }
+
     @Override
     public String toLangString() {
         return this.toString();
@@ -0,0 +1,10 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.interpreting.Watchdog;
+
+/**
+ * Something running elsewhere that `join` can wait for, until {@code watchdog} stops the script waiting.
+ */
+public interface LoxJoinable extends LoxObject {
+    LoxObject join(Watchdog watchdog);
+}
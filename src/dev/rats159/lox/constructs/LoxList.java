@@ -0,0 +1,90 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.errors.LoxBuiltinError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * A growable list of values, made with `list()`. Elements may be nil.
+ */
+public final class LoxList implements LoxFreezable {
+    private final List<LoxObject> values;
+    private volatile boolean frozen = false;
+
+    public LoxList() {
+        this.values = new ArrayList<>();
+    }
+
+    public LoxList(List<LoxObject> values) {
+        this.values = new ArrayList<>(values);
+    }
+
+    public LoxObject get(int index) {
+        return values.get(index);
+    }
+
+    public void set(int index, LoxObject value) {
+        checkNotFrozen();
+        values.set(index, value);
+    }
+
+    public void add(LoxObject value) {
+        checkNotFrozen();
+        values.add(value);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+
+        frozen = true;
+        for (LoxObject value : values) {
+            if (value instanceof LoxFreezable freezable) {
+                freezable.freeze();
+            }
+        }
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    @Override
+    public Iterable<LoxObject> contents() {
+        return values;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new LoxBuiltinError("Can't change a frozen list.");
+        }
+    }
+
+    @Override
+    public String toLangString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (LoxObject value : values) {
+            joiner.add(value == null ? "nil" : value.toLangString());
+        }
+        return joiner.toString();
+    }
+
+    @Override
+    public String type() {
+        return "list";
+    }
+
+    @Override
+    public boolean isTruthy() {
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.interpreting.Watchdog;
+
+/**
+ * Something `send` and `receive` work on. Both can wait, and give up when {@code watchdog} stops the script waiting.
+ */
+public interface LoxMailbox extends LoxObject {
+    void send(LoxObject value, Watchdog watchdog);
+
+    LoxObject receive(Watchdog watchdog);
+}
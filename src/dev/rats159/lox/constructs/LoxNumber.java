@@ -13,7 +13,7 @@ public final class LoxNumber implements LoxAddable, LoxObject, LoxSubtractable,
     public LoxAddable add(LoxAddable other) throws LoxTypeError {
         return switch (other) {
             case LoxNumber num -> new LoxNumber(this.value + num.value);
-            case LoxString str -> new LoxString(this.toLangString() + str.value);
+            case LoxString str -> LoxString.concat(new LoxString(this.toLangString()), str);
             default -> throw new LoxTypeError("Unable to add types %s and %s".formatted(this.type(), other.type()));
         };
     }
@@ -100,6 +100,7 @@ public final class LoxNumber implements LoxAddable, LoxObject, LoxSubtractable,
     public LoxBoolean equal(LoxEquateable other) {
         return switch (other) {
             case LoxNumber num -> new LoxBoolean(this.value == num.value);
+            case LoxString ignored -> new LoxBoolean(false);
         };
     }
 
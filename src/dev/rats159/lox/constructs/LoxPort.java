@@ -0,0 +1,91 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.interpreting.Watchdog;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * One end of the link between two isolates. Each value sent is copied, so the two sides never share anything
+ * mutable: numbers, strings, booleans, nil and frozen values go across as they are, other lists are copied deeply,
+ * and anything else (functions, instances, channels) can't be sent at all. Frozen values never reach a function, so
+ * nothing sent can share mutable state. Methods of a frozen instance run in whichever isolate calls them, against
+ * that isolate's globals.
+ */
+public final class LoxPort implements LoxMailbox {
+    private final LoxChannel incoming;
+    private final LoxChannel outgoing;
+
+    private LoxPort(LoxChannel incoming, LoxChannel outgoing) {
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+    }
+
+    /**
+     * Two ports, where whatever is sent to one is received from the other.
+     */
+    public static LoxPort[] pair(int capacity) {
+        LoxChannel there = new LoxChannel(capacity);
+        LoxChannel back = new LoxChannel(capacity);
+        return new LoxPort[]{new LoxPort(back, there), new LoxPort(there, back)};
+    }
+
+    @Override
+    public void send(LoxObject value, Watchdog watchdog) {
+        outgoing.send(copy(value, new IdentityHashMap<>()), watchdog);
+    }
+
+    @Override
+    public LoxObject receive(Watchdog watchdog) {
+        return incoming.receive(watchdog);
+    }
+
+    /**
+     * Closes both directions, for when one side has finished: the other can still receive what was already sent, but
+     * can't wait for anything more.
+     */
+    public void close(String reason) {
+        incoming.close(reason);
+        outgoing.close(reason);
+    }
+
+    private static LoxObject copy(LoxObject value, Map<LoxObject, LoxObject> copies) {
+        if (value == null || value instanceof LoxNumber || value instanceof LoxString
+          || value instanceof LoxBoolean || value instanceof LoxNil
+          || value instanceof LoxFreezable freezable && freezable.isFrozen()) {
+            return value;
+        }
+
+        if (value instanceof LoxList list) {
+            LoxObject existing = copies.get(list);
+            if (existing != null) {
+                return existing;
+            }
+
+            LoxList copy = new LoxList();
+            copies.put(list, copy);
+            for (int i = 0; i < list.size(); i++) {
+                copy.add(copy(list.get(i), copies));
+            }
+            return copy;
+        }
+
+        throw new LoxBuiltinError("Can't send a %s to another isolate.".formatted(value.type()));
+    }
+
+    @Override
+    public String toLangString() {
+        return "<port>";
+    }
+
+    @Override
+    public String type() {
+        return "port";
+    }
+
+    @Override
+    public boolean isTruthy() {
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package dev.rats159.lox.constructs;
 
+@SuppressWarnings("serial") // Never serialized
 public class LoxReturn extends RuntimeException{
    public final LoxObject value;
 
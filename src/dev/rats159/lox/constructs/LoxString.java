@@ -2,15 +2,176 @@ package dev.rats159.lox.constructs;
 
 import dev.rats159.lox.errors.LoxTypeError;
 
-public final class LoxString implements LoxAddable, LoxObject, LoxMultipliable {
-    public String value;
+import java.util.ArrayDeque;
+
+/**
+ * A Lox string. Concatenating two strings doesn't copy either: unless the result is short, it is a rope that just
+ * points at both halves, and the characters are only copied into one Java string the first time something needs
+ * them. Building a string up in a loop is linear rather than quadratic that way. The heap is still charged for each
+ * concatenation's whole text, since nearly anything that reads a rope flattens it.
+ */
+public final class LoxString implements LoxAddable, LoxObject, LoxMultipliable, LoxEquateable {
+    /**
+     * Concatenations shorter than this are copied right away. A rope node costs about as much as that many
+     * characters, and lots of tiny leaves make flattening slower.
+     */
+    private static final int ROPE_THRESHOLD = 64;
+
+    /**
+     * The longest string repetition or concatenation will make, well short of the JVM's array limit.
+     */
+    private static final int MAX_LENGTH = Integer.MAX_VALUE / 2;
+
+    private record Concat(LoxString left, LoxString right) {
+    }
+
+    /**
+     * Either the text as a {@link String}, or a {@link Concat} of two halves until someone needs the text. Strings
+     * are shared between threads, so this is one volatile field: readers see either a whole rope or a whole string,
+     * and two threads flattening at once just do the same work twice.
+     */
+    private volatile Object content;
+    private final int length;
+
+    /**
+     * The table this is the shared copy in, or null if it isn't interned.
+     */
+    private final StringTable table;
+
     public LoxString(String value) {
-        this.value = value;
+        this(value, null);
+    }
+
+    LoxString(String value, StringTable table) {
+        this.content = value;
+        this.length = value.length();
+        this.table = table;
+    }
+
+    private LoxString(LoxString left, LoxString right) {
+        this.content = new Concat(left, right);
+        this.length = left.length + right.length;
+        this.table = null;
+    }
+
+    /**
+     * {@code left} followed by {@code right}.
+     */
+    public static LoxString concat(LoxString left, LoxString right) throws LoxTypeError {
+        long length = (long) left.length + right.length;
+        if (length > MAX_LENGTH) {
+            throw new LoxTypeError("Concatenated string would be too long");
+        } else if (right.length == 0) {
+            return left;
+        } else if (left.length == 0) {
+            return right;
+        } else if (length < ROPE_THRESHOLD) {
+            return new LoxString(left.toLangString() + right.toLangString());
+        }
+        return new LoxString(left, right);
+    }
+
+    /**
+     * The text of every value in {@code parts}, one after another, copied once into a buffer of exactly the right
+     * size.
+     */
+    public static LoxString join(LoxObject[] parts) throws LoxTypeError {
+        String[] texts = new String[parts.length];
+        long length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            texts[i] = parts[i] == null ? "nil" : parts[i].toLangString();
+            length += texts[i].length();
+        }
+        if (length > MAX_LENGTH) {
+            throw new LoxTypeError("Interpolated string would be too long");
+        }
+
+        StringBuilder builder = new StringBuilder((int) length);
+        for (String text : texts) {
+            builder.append(text);
+        }
+        return new LoxString(builder.toString());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    boolean isInterned(StringTable table) {
+        return this.table != null && this.table == table;
     }
 
     @Override
     public String toLangString() {
-        return this.value;
+        Object content = this.content;
+        if (content instanceof String value) {
+            return value;
+        }
+
+        String value = flatten((Concat) content);
+        this.content = value;
+        return value;
+    }
+
+    /**
+     * Copies the leaves of a rope out in order. Ropes built by a loop are as deep as the loop ran, so this walks them
+     * with a stack of its own rather than recursing.
+     */
+    private String flatten(Concat root) {
+        StringBuilder builder = new StringBuilder(length);
+        ArrayDeque<LoxString> pending = new ArrayDeque<>();
+        pending.push(root.right);
+        pending.push(root.left);
+
+        while (!pending.isEmpty()) {
+            Object content = pending.pop().content;
+            if (content instanceof Concat(LoxString left, LoxString right)) {
+                pending.push(right);
+                pending.push(left);
+            } else {
+                builder.append((String) content);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Whether this has the same text as {@code other}. Interned strings and lengths settle most comparisons without
+     * reading any characters, and after that the hash codes, which {@link String} caches, settle most of the rest.
+     */
+    private boolean sameText(LoxString other) {
+        if (this == other) {
+            return true;
+        } else if (other.isInterned(table) || length != other.length) {
+            return false;
+        }
+
+        String text = toLangString();
+        String otherText = other.toLangString();
+        return text.hashCode() == otherText.hashCode() && text.equals(otherText);
+    }
+
+    @Override
+    public LoxBoolean equal(LoxEquateable other) {
+        return switch (other) {
+            case LoxString string -> new LoxBoolean(sameText(string));
+            case LoxNumber ignored -> new LoxBoolean(false);
+        };
+    }
+
+    @Override
+    public LoxBoolean unequal(LoxEquateable other) {
+        return new LoxBoolean(!(this.equal(other).value));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LoxString string && sameText(string);
+    }
+
+    @Override
+    public int hashCode() {
+        return toLangString().hashCode();
     }
 
     @Override
@@ -20,18 +181,25 @@ public final class LoxString implements LoxAddable, LoxObject, LoxMultipliable {
 
     @Override
     public boolean isTruthy() {
-        return !this.value.isEmpty();
+        return this.length != 0;
     }
 
     @Override
-    public LoxAddable add(LoxAddable other) {
-        return new LoxString(this.value + other.toLangString());
+    public LoxAddable add(LoxAddable other) throws LoxTypeError {
+        return concat(this, other instanceof LoxString string ? string : new LoxString(other.toLangString()));
     }
 
     @Override
     public LoxMultipliable multiply(LoxMultipliable other) throws LoxTypeError {
         return switch(other){
-            case LoxNumber num -> new LoxString(this.value.repeat((int) num.value));
+            case LoxNumber num -> {
+                if (num.value < 0) {
+                    throw new LoxTypeError("Can't repeat a string a negative number of times");
+                } else if (this.length * Math.floor(num.value) > MAX_LENGTH) {
+                    throw new LoxTypeError("Repeated string would be too long");
+                }
+                yield new LoxString(this.toLangString().repeat((int) num.value));
+            }
             default -> throw new LoxTypeError("Unable to add types %s and %s".formatted(this.type(), other.type()));
         };
     }
@@ -0,0 +1,23 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.interpreting.VariableEnvironment;
+
+import java.util.List;
+
+/**
+ * A `return f(x)` that hasn't made its call yet. The function being returned from runs it in place of itself, so
+ * tail-recursive code doesn't grow the stack.
+ */
+@SuppressWarnings("serial") // Never serialized
+public class LoxTailCall extends LoxReturn {
+   final LoxFunction function;
+   final VariableEnvironment closure;
+   final List<LoxObject> arguments;
+
+   LoxTailCall(LoxFunction function, VariableEnvironment closure, List<LoxObject> arguments) {
+      super(null);
+      this.function = function;
+      this.closure = closure;
+      this.arguments = arguments;
+   }
+}
@@ -0,0 +1,96 @@
+package dev.rats159.lox.constructs;
+
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.errors.LoxRuntimeError;
+import dev.rats159.lox.interpreting.Interpreter;
+import dev.rats159.lox.interpreting.Watchdog;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A function running on its own virtual thread, made by `spawn`. Errors it runs into are rethrown by {@link #join}.
+ * Until it is joined, the interpreter that spawned it keeps track of it, so if it fails and is never joined its error
+ * is still reported when the script finishes.
+ */
+public final class LoxTask implements LoxJoinable {
+    private final Thread thread;
+    private final Interpreter interpreter;
+    private LoxObject result;
+    private Throwable failure;
+
+    public LoxTask(LoxCallable function, Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.thread = Thread.ofVirtual().name("lox-task").unstarted(() -> {
+            try {
+                result = function.call(interpreter, List.of());
+                interpreter.flushAllocations();
+                interpreter.untrack(this); // Nothing to report, whether or not it's joined
+            } catch (Throwable e) { // Including stack overflows, which would otherwise only end the thread
+                failure = e;
+            }
+        });
+    }
+
+    public LoxTask start() {
+        interpreter.track(this);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Whether the task has finished, successfully or not.
+     */
+    public boolean isDone() {
+        return !thread.isAlive();
+    }
+
+    /**
+     * What the task failed with, as a Lox error, or null if it succeeded. Only meaningful once it {@link #isDone}.
+     */
+    public LoxRuntimeError error() {
+        return switch (failure) {
+            case null -> null;
+            case LoxRuntimeError error -> error;
+            case LoxBuiltinError error -> new LoxRuntimeError(null, error.getMessage());
+            case StackOverflowError ignored -> new LoxRuntimeError(null, "Stack overflow in a task.");
+            default -> new LoxRuntimeError(null, "Task failed: " + failure);
+        };
+    }
+
+    /**
+     * Waits for the task to finish and returns what its function returned.
+     */
+    @Override
+    public LoxObject join(Watchdog watchdog) {
+        try {
+            watchdog.await(millis -> thread.join(Duration.ofMillis(millis)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoxBuiltinError("Interrupted while joining a task.");
+        }
+
+        interpreter.untrack(this);
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        } else if (failure != null) {
+            throw new LoxBuiltinError(error().getMessage()); // Reported at the join
+        }
+        return result;
+    }
+
+    @Override
+    public String toLangString() {
+        return "<task>";
+    }
+
+    @Override
+    public String type() {
+        return "task";
+    }
+
+    @Override
+    public boolean isTruthy() {
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package dev.rats159.lox.constructs;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One shared {@link LoxString} per distinct text, for string literals and the `intern` builtin. Two strings interned
+ * in the same table are equal exactly when they are the same object, so comparing them never looks at their
+ * characters. The table only holds its strings weakly: once no script, prepared or running, can reach an interned
+ * string it is dropped, and the next string with that text is interned afresh.
+ */
+public final class StringTable {
+    private final ConcurrentHashMap<String, Entry> strings = new ConcurrentHashMap<>();
+    private final ReferenceQueue<LoxString> collected = new ReferenceQueue<>();
+
+    private static final class Entry extends WeakReference<LoxString> {
+        private final String text;
+
+        Entry(LoxString string, String text, ReferenceQueue<LoxString> queue) {
+            super(string, queue);
+            this.text = text;
+        }
+    }
+
+    public LoxString intern(String value) {
+        Entry entry = strings.get(value);
+        LoxString interned = entry == null ? null : entry.get();
+        if (interned != null) {
+            return interned;
+        }
+
+        expunge();
+        LoxString[] created = new LoxString[1];
+        strings.compute(value, (text, existing) -> {
+            created[0] = existing == null ? null : existing.get();
+            if (created[0] != null) {
+                return existing;
+            }
+            created[0] = new LoxString(text, this);
+            return new Entry(created[0], text, collected);
+        });
+        return created[0];
+    }
+
+    public LoxString intern(LoxString string) {
+        return string.isInterned(this) ? string : intern(string.toLangString());
+    }
+
+    /**
+     * Removes the entries of strings that have been collected, unless the text has been interned again since.
+     */
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            strings.remove(entry.text, entry);
+        }
+    }
+}
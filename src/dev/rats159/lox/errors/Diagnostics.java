@@ -0,0 +1,72 @@
+package dev.rats159.lox.errors;
+
+import dev.rats159.lox.events.LoxEvents;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.lexing.TokenType;
+
+import java.io.PrintStream;
+
+/**
+ * Collects the errors reported while running one script context. Every stage of the pipeline reports through the
+ * instance it was constructed with, so separate contexts never see each other's errors.
+ */
+public class Diagnostics {
+   private final PrintStream err;
+   private boolean hadError = false;
+   private boolean hadRuntimeError = false;
+   private LoxRuntimeError lastRuntimeError = null;
+
+   public Diagnostics(PrintStream err) {
+      this.err = err;
+   }
+
+   public void error(int line, String message) {
+      report(line, "", message);
+   }
+
+   public void error(Token token, String message) {
+      if (token.type() == TokenType.EOF) {
+         report(token.line(), " at end", message);
+      } else {
+         report(token.line(), " at '%s'".formatted(token.lexeme()), message);
+      }
+   }
+
+   private void report(int line, String where, String message) {
+      err.printf("[line %d] Error%s: %s\n", line, where, message);
+      hadError = true;
+   }
+
+   public void runtimeError(LoxRuntimeError error) {
+      if (error.token == null) {
+         err.printf("%s\n", error.getMessage());
+      } else {
+         err.printf("%s\n[line %d]\n", error.getMessage(), error.token.line());
+      }
+      hadRuntimeError = true;
+      lastRuntimeError = error;
+      LoxEvents.error(error.getMessage(), error.function() == null ? "script" : error.function(),
+        error.token == null ? 0 : error.token.line());
+   }
+
+   public boolean hadError() {
+      return hadError;
+   }
+
+   public boolean hadRuntimeError() {
+      return hadRuntimeError;
+   }
+
+   /**
+    * The error that stopped the last run, e.g. a {@link LoxBudgetExceededError}, or null if it didn't fail at runtime.
+    */
+   public LoxRuntimeError lastRuntimeError() {
+      return lastRuntimeError;
+   }
+
+   public void reset() {
+      hadError = false;
+      hadRuntimeError = false;
+      lastRuntimeError = null;
+   }
+}
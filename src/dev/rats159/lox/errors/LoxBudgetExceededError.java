@@ -0,0 +1,11 @@
+package dev.rats159.lox.errors;
+
+/**
+ * Stops a script that used up the fuel or time its context allows.
+ */
+@SuppressWarnings("serial") // Never serialized
+public class LoxBudgetExceededError extends LoxTerminatedError {
+   public LoxBudgetExceededError(String message) {
+      super(message);
+   }
+}
@@ -0,0 +1,12 @@
+package dev.rats159.lox.errors;
+
+/**
+ * Thrown by builtins, which don't know where they were called from. The interpreter turns it into a
+ * {@link LoxRuntimeError} at the call's closing paren.
+ */
+@SuppressWarnings("serial") // Never serialized
+public class LoxBuiltinError extends RuntimeException {
+   public LoxBuiltinError(String message) {
+      super(message);
+   }
+}
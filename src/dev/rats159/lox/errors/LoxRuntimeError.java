@@ -5,11 +5,29 @@ import dev.rats159.lox.lexing.Token;
 /**
  * The base class for all lox errors. This is the only error that should actually be thrown. All other errors should be caught and transformed
 */
+@SuppressWarnings("serial") // Never serialized
 public class LoxRuntimeError extends RuntimeException{
    public final Token token;
+   private String function = null;
 
    public LoxRuntimeError(Token token, String message) {
       super(message);
       this.token = token;
    }
+
+   /**
+    * Notes that the error unwound out of the Lox function {@code function}. Only the first, innermost, one sticks.
+    */
+   public void raisedIn(String function) {
+      if (this.function == null) {
+         this.function = function;
+      }
+   }
+
+   /**
+    * The innermost Lox function the error was raised in, or null if it was raised at the top level.
+    */
+   public String function() {
+      return function;
+   }
 }
@@ -0,0 +1,11 @@
+package dev.rats159.lox.errors;
+
+/**
+ * Stops a script that was told to stop from outside. It isn't tied to any line of the script, so it has no token.
+ */
+@SuppressWarnings("serial") // Never serialized
+public class LoxTerminatedError extends LoxRuntimeError {
+   public LoxTerminatedError(String message) {
+      super(null, message);
+   }
+}
@@ -1,5 +1,6 @@
 package dev.rats159.lox.errors;
 
+@SuppressWarnings("serial") // Never serialized
 public class LoxTypeError extends Exception{
     public LoxTypeError(String message){
         super(message);
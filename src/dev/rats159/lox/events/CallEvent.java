@@ -0,0 +1,33 @@
+package dev.rats159.lox.events;
+
+import jdk.jfr.*;
+
+/**
+ * A Lox function call that took longer than the threshold, by default 1 ms. Tail calls each get their own event.
+ */
+@Name("dev.rats159.lox.Call")
+@Label("Lox Call")
+@Category("Lox")
+@Description("A Lox function call that took longer than the threshold")
+@Threshold("1 ms")
+@StackTrace(false)
+public final class CallEvent extends Event {
+    @Label("Function")
+    String function;
+
+    @Label("Line")
+    @Description("The line the function is declared on")
+    int line;
+
+    /**
+     * Ends the event and commits it if it is enabled and took long enough.
+     */
+    public void finish(String function, int line) {
+        end();
+        if (shouldCommit()) {
+            this.function = function;
+            this.line = line;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.rats159.lox.events;
+
+import jdk.jfr.*;
+
+/**
+ * One phase of getting a script ready to run: tokenizing, parsing, optimizing and resolving it, or compiling a
+ * function for the stack interpreter.
+ */
+@Name("dev.rats159.lox.Compile")
+@Label("Lox Compile Phase")
+@Category("Lox")
+@Description("One phase of preparing a Lox script or function to run")
+@StackTrace(false)
+public final class CompileEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Function")
+    @Description("The function being compiled, or script for a whole script")
+    String function;
+
+    @Label("Line")
+    @Description("The line the function is declared on, or 0 for a whole script")
+    int line;
+
+    public void finish(String phase, String function, int line) {
+        end();
+        if (shouldCommit()) {
+            this.phase = phase;
+            this.function = function;
+            this.line = line;
+            commit();
+        }
+    }
+}
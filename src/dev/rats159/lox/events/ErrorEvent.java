@@ -0,0 +1,34 @@
+package dev.rats159.lox.events;
+
+import jdk.jfr.*;
+
+/**
+ * A runtime error that stopped a Lox script.
+ */
+@Name("dev.rats159.lox.Error")
+@Label("Lox Error")
+@Category("Lox")
+@Description("A runtime error that stopped a Lox script")
+@StackTrace(false)
+public final class ErrorEvent extends Event {
+    @Label("Message")
+    String message;
+
+    @Label("Function")
+    @Description("The innermost Lox function the error was raised in")
+    String function;
+
+    @Label("Line")
+    @Description("The line the error was raised on, or 0 if it has none")
+    int line;
+
+    public static void report(String message, String function, int line) {
+        ErrorEvent event = new ErrorEvent();
+        if (event.shouldCommit()) {
+            event.message = message;
+            event.function = function;
+            event.line = line;
+            event.commit();
+        }
+    }
+}
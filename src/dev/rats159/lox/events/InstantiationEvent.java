@@ -0,0 +1,29 @@
+package dev.rats159.lox.events;
+
+import jdk.jfr.*;
+
+/**
+ * An instance of a Lox class being made, including the time its initializer took.
+ */
+@Name("dev.rats159.lox.Instantiation")
+@Label("Lox Instantiation")
+@Category("Lox")
+@Description("An instance of a Lox class being made")
+@StackTrace(false)
+public final class InstantiationEvent extends Event {
+    @Label("Class")
+    String className;
+
+    @Label("Line")
+    @Description("The line the class is declared on")
+    int line;
+
+    public void finish(String className, int line) {
+        end();
+        if (shouldCommit()) {
+            this.className = className;
+            this.line = line;
+            commit();
+        }
+    }
+}
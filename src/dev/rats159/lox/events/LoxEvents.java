@@ -0,0 +1,64 @@
+package dev.rats159.lox.events;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Where the interpreter gets its flight recorder events. Loading the first event class starts up a good part of the
+ * flight recorder, which would add a noticeable delay to every run, so nothing touches one until a recording has
+ * actually been started. Each method returns a begun event, or null if that kind of event isn't being recorded.
+ */
+public final class LoxEvents {
+    private LoxEvents() {
+    }
+
+    /**
+     * Only asked whether their kind of event is enabled, so calls don't have to make an event each.
+     */
+    private static final class Probes {
+        static final CallEvent CALLS = new CallEvent();
+        static final InstantiationEvent INSTANTIATIONS = new InstantiationEvent();
+        static final CompileEvent COMPILES = new CompileEvent();
+    }
+
+    public static CallEvent call() {
+        if (!FlightRecorder.isInitialized() || !Probes.CALLS.isEnabled()) {
+            return null;
+        }
+        CallEvent event = new CallEvent();
+        event.begin();
+        return event;
+    }
+
+    public static InstantiationEvent instantiation() {
+        if (!FlightRecorder.isInitialized() || !Probes.INSTANTIATIONS.isEnabled()) {
+            return null;
+        }
+        InstantiationEvent event = new InstantiationEvent();
+        event.begin();
+        return event;
+    }
+
+    public static CompileEvent compile() {
+        if (!FlightRecorder.isInitialized() || !Probes.COMPILES.isEnabled()) {
+            return null;
+        }
+        CompileEvent event = new CompileEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes a {@link #compile} event, if there is one.
+     */
+    public static void compiled(CompileEvent event, String phase, String function, int line) {
+        if (event != null) {
+            event.finish(phase, function, line);
+        }
+    }
+
+    public static void error(String message, String function, int line) {
+        if (FlightRecorder.isInitialized()) {
+            ErrorEvent.report(message, function, line);
+        }
+    }
+}
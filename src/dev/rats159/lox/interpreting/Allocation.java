@@ -0,0 +1,16 @@
+package dev.rats159.lox.interpreting;
+
+/**
+ * What an interpreter charged to the {@link Heap} for, as reported by the {@link AllocationProfiler}.
+ */
+public enum Allocation {
+    ENVIRONMENT,
+    INSTANCE,
+    FUNCTION,
+    STRING,
+    LIST;
+
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,64 @@
+package dev.rats159.lox.interpreting;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every allocation a profiled context makes by the Lox function and line that made it, so the code producing
+ * the most garbage can be found. Uses the same estimated sizes as the {@link Heap}, and sees every allocation rather
+ * than a sample, so tracking slows the script down noticeably.
+ */
+public final class AllocationProfiler {
+    private record Site(String function, int line, Allocation kind) {
+    }
+
+    private static final class Totals {
+        final LongAdder count = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+
+    private final Map<Site, Totals> sites = new ConcurrentHashMap<>();
+
+    void record(ShadowStack stack, Allocation kind, long bytes) {
+        String function = stack.function();
+        Site site = new Site(function == null ? "?" : function, stack.currentLine(), kind);
+
+        Totals totals = sites.computeIfAbsent(site, ignored -> new Totals());
+        totals.count.increment();
+        totals.bytes.add(bytes);
+    }
+
+    /**
+     * Writes one line per site with the number of allocations and bytes it made, the sites making the most bytes
+     * first.
+     */
+    public void writeReport(PrintStream out) {
+        record Row(Site site, long count, long bytes) {
+        }
+
+        List<Row> rows = new ArrayList<>();
+        long totalCount = 0;
+        long totalBytes = 0;
+        for (Map.Entry<Site, Totals> entry : sites.entrySet()) {
+            Row row = new Row(entry.getKey(), entry.getValue().count.sum(), entry.getValue().bytes.sum());
+            rows.add(row);
+            totalCount += row.count;
+            totalBytes += row.bytes;
+        }
+        rows.sort(Comparator.comparingLong(Row::bytes).reversed()
+          .thenComparing(row -> row.site.function)
+          .thenComparingInt(row -> row.site.line));
+
+        out.printf("%14s %12s  %-12s %s%n", "bytes", "count", "kind", "site");
+        for (Row row : rows) {
+            out.printf("%14d %12d  %-12s %s:%d%n", row.bytes, row.count, row.site.kind.label(), row.site.function, row.site.line);
+        }
+        out.printf("%14d %12d  total%n", totalBytes, totalCount);
+        out.flush();
+    }
+}
@@ -0,0 +1,45 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.LoxCallable;
+import dev.rats159.lox.constructs.LoxList;
+import dev.rats159.lox.constructs.LoxNumber;
+import dev.rats159.lox.constructs.LoxObject;
+import dev.rats159.lox.errors.LoxBuiltinError;
+
+/**
+ * Checks for the arguments builtins take, failing with a {@link LoxBuiltinError} naming what was expected.
+ */
+final class Arguments {
+    private Arguments() {
+    }
+
+    static int wholeNumber(LoxObject value, String what) {
+        if (!(value instanceof LoxNumber number)
+          || number.value != Math.floor(number.value) || Math.abs(number.value) > Integer.MAX_VALUE) {
+            throw new LoxBuiltinError("%s must be a whole number.".formatted(what));
+        }
+        return (int) number.value;
+    }
+
+    static int index(LoxList list, LoxObject value) {
+        int index = wholeNumber(value, "List index");
+        if (index < 0 || index >= list.size()) {
+            throw new LoxBuiltinError("List index %d out of bounds for length %d.".formatted(index, list.size()));
+        }
+        return index;
+    }
+
+    static LoxList list(LoxObject value) {
+        if (!(value instanceof LoxList list)) {
+            throw new LoxBuiltinError("Expected a list.");
+        }
+        return list;
+    }
+
+    static LoxCallable function(LoxObject value, int arity) {
+        if (!(value instanceof LoxCallable function) || function.arity() != arity) {
+            throw new LoxBuiltinError("Expected a function that takes %d argument%s.".formatted(arity, arity == 1 ? "" : "s"));
+        }
+        return function;
+    }
+}
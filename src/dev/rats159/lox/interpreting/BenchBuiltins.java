@@ -0,0 +1,84 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.LoxBuiltinError;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.lexing.TokenType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * `nanoTime` and `bench`, for timing parts of a script from inside it.
+ */
+final class BenchBuiltins {
+    /**
+     * What `nanoTime` counts from. A double only holds whole numbers exactly up to 2^53, which {@link System#nanoTime()}
+     * may already be past on a machine that has been up a while, so times are kept small by starting near zero.
+     */
+    private static final long ORIGIN = System.nanoTime();
+
+    /**
+     * The class of what `bench` returns: an instance with `iterations`, `mean`, `min`, `max`, `p50`, `p90` and `p99`
+     * fields, all but the first in nanoseconds.
+     */
+    private static final LoxClass RESULT = new LoxClass("BenchResult", 0, null, Map.of());
+
+    private BenchBuiltins() {
+    }
+
+    static void define(VariableEnvironment globals) {
+        globals.define("nanoTime", LoxBuiltin.of("nanoTime", 0, (interpreter, args) ->
+          new LoxNumber(System.nanoTime() - ORIGIN)));
+
+        globals.define("bench", LoxBuiltin.of("bench", 2, (interpreter, args) -> {
+            LoxCallable function = Arguments.function(args.getFirst(), 0);
+            int iterations = Arguments.wholeNumber(args.get(1), "Iteration count");
+            if (iterations <= 0) {
+                throw new LoxBuiltinError("Iteration count must be positive.");
+            }
+
+            // As many untimed calls first, so the JIT has compiled what's being measured before it's measured
+            for (int i = 0; i < iterations; i++) {
+                function.call(interpreter, List.of());
+            }
+
+            long[] times = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                function.call(interpreter, List.of());
+                times[i] = System.nanoTime() - start;
+            }
+
+            return result(interpreter, times);
+        }));
+    }
+
+    private static LoxObject result(Interpreter interpreter, long[] times) {
+        Arrays.sort(times);
+        double mean = Arrays.stream(times).average().orElseThrow();
+
+        LoxInstance result = (LoxInstance) RESULT.call(interpreter, List.of());
+        field(result, "iterations", times.length);
+        field(result, "mean", mean);
+        field(result, "min", times[0]);
+        field(result, "max", times[times.length - 1]);
+        field(result, "p50", percentile(times, 50));
+        field(result, "p90", percentile(times, 90));
+        field(result, "p99", percentile(times, 99));
+        return result;
+    }
+
+    /**
+     * The smallest time that at least {@code percent}% of {@code sorted} is no greater than.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(sorted.length * percent / 100.0);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static void field(LoxInstance instance, String name, double value) {
+        instance.set(new Token(TokenType.IDENTIFIER, name, null, 0), new LoxNumber(value));
+    }
+}
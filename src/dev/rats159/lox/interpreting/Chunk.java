@@ -0,0 +1,91 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.resolving.Resolution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The compiled form of a script or function body for the {@link StackInterpreter}. Every instruction is an opcode and
+ * two operands, usually indices into {@link #constants} or jump targets (instruction indices). Functions declared in
+ * the chunk share its {@link #resolution}. Each instruction also remembers the source line it was compiled from.
+ */
+final class Chunk {
+    static final int WIDTH = 3;
+
+    final String name;
+    final Resolution resolution;
+    private int[] code = new int[WIDTH * 16];
+    private int[] lines = new int[16];
+    private int count = 0;
+
+    /**
+     * The line instructions emitted from now on came from.
+     */
+    int line = 0;
+    private final List<Object> constants = new ArrayList<>();
+
+    Chunk(String name, Resolution resolution) {
+        this.name = name;
+        this.resolution = resolution;
+    }
+
+    int emit(int op) {
+        return emit(op, 0, 0);
+    }
+
+    int emit(int op, int a) {
+        return emit(op, a, 0);
+    }
+
+    int emit(int op, int a, int b) {
+        if (count * WIDTH == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+
+        int at = count * WIDTH;
+        code[at] = op;
+        code[at + 1] = a;
+        code[at + 2] = b;
+        lines[count] = line;
+        return count++;
+    }
+
+    /**
+     * Points the jump at {@code instruction} to wherever the next instruction will be emitted.
+     */
+    void patch(int instruction, int operand) {
+        code[instruction * WIDTH + operand] = count;
+    }
+
+    int constant(Object value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int op(int instruction) {
+        return code[instruction * WIDTH];
+    }
+
+    int a(int instruction) {
+        return code[instruction * WIDTH + 1];
+    }
+
+    int b(int instruction) {
+        return code[instruction * WIDTH + 2];
+    }
+
+    int line(int instruction) {
+        return lines[instruction];
+    }
+
+    Object constantAt(int index) {
+        return constants.get(index);
+    }
+}
@@ -0,0 +1,58 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.events.CompileEvent;
+import dev.rats159.lox.events.LoxEvents;
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link Chunk}s the {@link StackInterpreter} has compiled one program to: its top level, and the body of each
+ * function it declares, each compiled the first time it runs. The program's {@link Resolution} keeps the cache, so
+ * every context running the program shares it and it goes away along with the program.
+ * <p>
+ * Calls look chunks up without locking. Compiling a new one copies the map, which only happens once per function.
+ */
+public final class ChunkCache {
+    private volatile Chunk script = null;
+    private volatile Map<Statement.Function, Chunk> functions = new IdentityHashMap<>();
+
+    public ChunkCache() {
+    }
+
+    Chunk script(List<Statement> statements, Resolution resolution) {
+        Chunk chunk = script;
+        return chunk != null ? chunk : compileScript(statements, resolution);
+    }
+
+    Chunk function(Statement.Function decl, Resolution resolution) {
+        Chunk chunk = functions.get(decl);
+        return chunk != null ? chunk : compileFunction(decl, resolution);
+    }
+
+    private synchronized Chunk compileScript(List<Statement> statements, Resolution resolution) {
+        if (script == null) {
+            CompileEvent event = LoxEvents.compile();
+            script = new Compiler().compile("script", statements, resolution);
+            LoxEvents.compiled(event, "compile", "script", 0);
+        }
+        return script;
+    }
+
+    private synchronized Chunk compileFunction(Statement.Function decl, Resolution resolution) {
+        Chunk chunk = functions.get(decl);
+        if (chunk == null) {
+            CompileEvent event = LoxEvents.compile();
+            chunk = new Compiler().compile(decl.name().lexeme(), decl.body(), resolution);
+            LoxEvents.compiled(event, "compile", decl.name().lexeme(), decl.name().line());
+
+            Map<Statement.Function, Chunk> copy = new IdentityHashMap<>(functions);
+            copy.put(decl, chunk);
+            functions = copy;
+        }
+        return chunk;
+    }
+}
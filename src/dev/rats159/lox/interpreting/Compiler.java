@@ -0,0 +1,359 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+
+import java.util.List;
+
+import static dev.rats159.lox.interpreting.OpCode.*;
+
+/**
+ * Turns resolved statements into {@link Chunk}s for the {@link StackInterpreter}. Variables are looked up with the
+ * depths in the program's {@link Resolution}, so both execution modes see exactly the same scopes.
+ */
+final class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    /**
+     * A hoisted loop slot: the variable {@code name}, {@code depth} environments out.
+     */
+    record Slot(int depth, String name) {
+    }
+
+    private Chunk chunk;
+
+    Chunk compile(String name, List<Statement> statements, Resolution resolution) {
+        Chunk enclosing = this.chunk;
+        Chunk compiled = new Chunk(name, resolution);
+        try {
+            this.chunk = compiled;
+            for (Statement statement : statements) {
+                compile(statement);
+            }
+        } finally {
+            this.chunk = enclosing;
+        }
+        return compiled;
+    }
+
+    private void compile(Statement statement) {
+        int line = Profiler.line(statement);
+        if (line > 0) {
+            chunk.line = line;
+        }
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression) {
+        int enclosing = chunk.line;
+        int line = Profiler.line(expression);
+        if (line > 0) {
+            chunk.line = line;
+        }
+        expression.accept(this);
+        chunk.line = enclosing;
+    }
+
+    private int depth(Expression expression) {
+        Integer depth = chunk.resolution.depth(expression);
+        return depth == null ? -1 : depth;
+    }
+
+    private void variable(Expression expression, Token name) {
+        int depth = depth(expression);
+        if (depth < 0) {
+            chunk.emit(GET_GLOBAL, chunk.constant(name));
+        } else {
+            chunk.emit(GET_LOCAL, depth, chunk.constant(name.lexeme()));
+        }
+    }
+
+    @Override
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        compile(expression.left());
+        compile(expression.right());
+        chunk.emit(BINARY, chunk.constant(expression.operator()));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        compile(expression.inner());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(Expression.Literal literal) {
+        chunk.emit(CONSTANT, chunk.constant(literal.value()));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(Expression.Unary unary) {
+        compile(unary.right());
+        chunk.emit(UNARY, chunk.constant(unary.operator()));
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(Expression.Variable variable) {
+        variable(variable, variable.name());
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpression(Expression.Assignment assignment) {
+        compile(assignment.value());
+        chunk.emit(ASSIGN, chunk.constant(assignment.name()), depth(assignment));
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(Expression.Logical logicalExpression) {
+        compile(logicalExpression.left());
+
+        int jump = chunk.emit(switch (logicalExpression.operator().type()) {
+            case OR -> JUMP_IF_TRUTHY;
+            default -> JUMP_IF_FALSY;
+        });
+        chunk.emit(POP);
+        compile(logicalExpression.right());
+        chunk.patch(jump, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(Expression.Call call) {
+        compile(call.callee());
+        for (Expression arg : call.args()) {
+            compile(arg);
+        }
+        chunk.emit(chunk.resolution.isTailCall(call) ? TAIL_CALL : CALL, call.args().size(), chunk.constant(call.paren()));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpression(Expression.Get get) {
+        compile(get.object());
+        chunk.emit(GET_PROPERTY, chunk.constant(get.name()));
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpression(Expression.Set set) {
+        compile(set.object());
+        chunk.emit(CHECK_FIELDS, chunk.constant(set.name()));
+        compile(set.value());
+        chunk.emit(SET_PROPERTY, chunk.constant(set.name()));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpression(Expression.This thisExpression) {
+        variable(thisExpression, thisExpression.keyword());
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpression(Expression.Super superExpression) {
+        chunk.emit(SUPER, chunk.constant(superExpression), depth(superExpression));
+        return null;
+    }
+
+    @Override
+    public Void visitHoistedExpression(Expression.Hoisted hoisted) {
+        int slot = chunk.constant(new Slot(depth(hoisted), hoisted.slot().lexeme()));
+
+        int load = chunk.emit(LOAD_SLOT, slot);
+        compile(hoisted.inner());
+        chunk.emit(STORE_SLOT, slot);
+        chunk.patch(load, 2);
+        return null;
+    }
+
+    @Override
+    public Void visitReducedExpression(Expression.Reduced reduced) {
+        compile(reduced.operand());
+        chunk.emit(REDUCE, chunk.constant(reduced));
+        return null;
+    }
+
+    @Override
+    public Void visitComparisonExpression(Expression.Comparison comparison) {
+        compile(comparison.left());
+        compile(comparison.right());
+        chunk.emit(BINARY, chunk.constant(comparison.operator()));
+        return null;
+    }
+
+    @Override
+    public Void visitInvokeExpression(Expression.Invoke invoke) {
+        int node = chunk.constant(invoke);
+
+        compile(invoke.object());
+        chunk.emit(GET_METHOD, node);
+        for (Expression arg : invoke.args()) {
+            compile(arg);
+        }
+        chunk.emit(chunk.resolution.isTailCall(invoke) ? TAIL_INVOKE : INVOKE, invoke.args().size(), node);
+        return null;
+    }
+
+    @Override
+    public Void visitCompoundAssignmentExpression(Expression.CompoundAssignment assignment) {
+        variable(assignment, assignment.name());
+        compile(assignment.value());
+        chunk.emit(COMPOUND, chunk.constant(assignment), depth(assignment));
+        return null;
+    }
+
+    @Override
+    public Void visitCompoundSetExpression(Expression.CompoundSet set) {
+        compile(set.object());
+        chunk.emit(GET_FIELD, chunk.constant(set.name()));
+        compile(set.value());
+        chunk.emit(COMPOUND_SET, chunk.constant(set));
+        return null;
+    }
+
+    @Override
+    public Void visitInterpolationExpression(Expression.Interpolation interpolation) {
+        for (Expression part : interpolation.parts()) {
+            compile(part);
+        }
+        chunk.emit(INTERPOLATE, interpolation.parts().size(), chunk.constant(interpolation));
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        compile(statement.expression());
+        chunk.emit(POP);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.VariableStatement statement) {
+        if (statement.initializer() != null) {
+            compile(statement.initializer());
+        } else {
+            chunk.emit(CONSTANT, chunk.constant(null));
+        }
+        chunk.emit(DEFINE, chunk.constant(statement.name().lexeme()));
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block block) {
+        if (block.declares()) {
+            chunk.emit(PUSH_SCOPE);
+        }
+        for (Statement statement : block.statements()) {
+            compile(statement);
+        }
+        if (block.declares()) {
+            chunk.emit(POP_SCOPE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If ifStatement) {
+        compile(ifStatement.condition());
+        int skipThen = chunk.emit(JUMP_IF_FALSE);
+        compile(ifStatement.thenBranch());
+
+        if (ifStatement.elseBranch() == null) {
+            chunk.patch(skipThen, 1);
+        } else {
+            int skipElse = chunk.emit(JUMP);
+            chunk.patch(skipThen, 1);
+            compile(ifStatement.elseBranch());
+            chunk.patch(skipElse, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.While whileStatement) {
+        int start = chunk.size();
+        compile(whileStatement.condition());
+        int exit = chunk.emit(JUMP_IF_FALSE);
+
+        compile(whileStatement.body());
+        chunk.emit(JUMP, start);
+        chunk.patch(exit, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.For forStatement) {
+        boolean scoped = forStatement.initializer() instanceof Statement.VariableStatement;
+        if (scoped) {
+            chunk.emit(PUSH_SCOPE);
+        }
+        if (forStatement.initializer() != null) {
+            compile(forStatement.initializer());
+        }
+
+        int start = chunk.size();
+        int exit = -1;
+        if (forStatement.condition() != null) {
+            compile(forStatement.condition());
+            exit = chunk.emit(JUMP_IF_FALSE);
+        }
+
+        compile(forStatement.body());
+        if (forStatement.increment() != null) {
+            compile(forStatement.increment());
+            chunk.emit(POP);
+        }
+        chunk.emit(JUMP, start);
+
+        if (exit >= 0) {
+            chunk.patch(exit, 1);
+        }
+        if (scoped) {
+            chunk.emit(POP_SCOPE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Statement.Function function) {
+        chunk.emit(CLOSURE, chunk.constant(function));
+        chunk.emit(DEFINE, chunk.constant(function.name().lexeme()));
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return returnStatement) {
+        if (returnStatement.value() != null) {
+            compile(returnStatement.value());
+        } else {
+            chunk.emit(CONSTANT, chunk.constant(null));
+        }
+        chunk.emit(RETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(Statement.Class classStatement) {
+        if (classStatement.superclass() != null) {
+            compile(classStatement.superclass());
+        } else {
+            chunk.emit(CONSTANT, chunk.constant(null));
+        }
+        chunk.emit(CLASS, chunk.constant(classStatement));
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(Statement.Print printStatement) {
+        compile(printStatement.callee());
+        compile(printStatement.value());
+        chunk.emit(PRINT, chunk.constant(printStatement.paren()));
+        chunk.emit(POP);
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.LoxBuiltinError;
+
+/**
+ * `spawn`, `channel`, `send`, `receive` and `join`. Spawned functions run on virtual threads, each with its own
+ * {@link Interpreter#fork() forked} interpreter, against the same globals as the script that spawned them.
+ * <p>
+ * Globals are safe to share between tasks; anything else (instances, captured locals) should be handed over through
+ * a channel rather than changed by two tasks at once, or by one task while another reads it. A task that fails without
+ * ever being joined has its error reported when the script finishes.
+ */
+final class ConcurrencyBuiltins {
+    private ConcurrencyBuiltins() {
+    }
+
+    static void define(VariableEnvironment globals) {
+        globals.define("spawn", LoxBuiltin.of("spawn", 1, (interpreter, args) -> {
+            LoxCallable function = Arguments.function(args.getFirst(), 0);
+            return new LoxTask(function, interpreter.fork()).start();
+        }));
+
+        globals.define("channel", LoxBuiltin.of("channel", 1, (interpreter, args) -> {
+            int capacity = Arguments.wholeNumber(args.getFirst(), "Channel capacity");
+            if (capacity < 0) {
+                throw new LoxBuiltinError("Channel capacity can't be negative.");
+            }
+            return new LoxChannel(capacity);
+        }));
+
+        globals.define("send", LoxBuiltin.of("send", 2, (interpreter, args) -> {
+            mailbox(args.getFirst()).send(args.get(1), interpreter.watchdog());
+            return null;
+        }));
+
+        globals.define("receive", LoxBuiltin.of("receive", 1, (interpreter, args) -> mailbox(args.getFirst()).receive(interpreter.watchdog())));
+
+        globals.define("join", LoxBuiltin.of("join", 1, (interpreter, args) -> {
+            if (!(args.getFirst() instanceof LoxJoinable joinable)) {
+                throw new LoxBuiltinError("Can only join tasks and isolates.");
+            }
+            return joinable.join(interpreter.watchdog());
+        }));
+    }
+
+    private static LoxMailbox mailbox(LoxObject value) {
+        if (!(value instanceof LoxMailbox mailbox)) {
+            throw new LoxBuiltinError("Expected a channel or an isolate.");
+        }
+        return mailbox;
+    }
+}
@@ -0,0 +1,54 @@
+package dev.rats159.lox.interpreting;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of what a context's interpreters have done, for monitoring. Like {@link Heap} charges, interpreters
+ * count locally and pass their counts on every so often, so the totals can lag a little behind while a script runs.
+ */
+public final class Counters {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder[] allocations = new LongAdder[Allocation.values().length];
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    Counters() {
+        for (int i = 0; i < allocations.length; i++) {
+            allocations[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * How many Lox functions have been called, counting each tail call.
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long allocations(Allocation kind) {
+        return allocations[kind.ordinal()].sum();
+    }
+
+    /**
+     * How many method reads on frozen instances were answered from the instance's bound-method cache.
+     */
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * How many method reads had to bind a new method, because the instance wasn't frozen or hadn't cached it yet.
+     */
+    public long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    void add(long calls, long[] allocations, long cacheHits, long cacheMisses) {
+        this.calls.add(calls);
+        for (int i = 0; i < allocations.length; i++) {
+            this.allocations[i].add(allocations[i]);
+        }
+        this.cacheHits.add(cacheHits);
+        this.cacheMisses.add(cacheMisses);
+    }
+}
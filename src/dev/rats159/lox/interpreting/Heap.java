@@ -0,0 +1,79 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.errors.LoxBudgetExceededError;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Roughly how many bytes a context's current run has allocated, optionally with a limit. The sizes are estimates for
+ * a 64-bit JVM with compressed pointers. Interpreters collect charges locally and pass them on in batches, so the
+ * count can lag behind by up to {@link #BATCH} bytes per thread; allocations big enough to matter on their own are
+ * checked before they happen.
+ * <p>
+ * An isolate's context gets a {@link #child} of the heap of the context that started it, which passes every charge on
+ * to the parent, so the isolate's allocations count against the parent's limit.
+ */
+public final class Heap {
+    public static final long STRING = 56;
+    public static final long ENVIRONMENT = 128;
+    public static final long INSTANCE = 96;
+    public static final long FUNCTION = 32;
+    public static final long LIST = 40;
+    public static final long REFERENCE = 8;
+    public static final long BOUND_METHOD = FUNCTION + ENVIRONMENT;
+
+    /**
+     * How many bytes an interpreter charges before passing them on.
+     */
+    static final long BATCH = 64 * 1024;
+
+    private static final long UNLIMITED = -1;
+
+    private final Heap parent;
+    private final AtomicLong allocated = new AtomicLong();
+    private volatile long limit = UNLIMITED;
+
+    public Heap() {
+        this(null);
+    }
+
+    private Heap(Heap parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * A heap for an isolate started by the script this one counts for, which shares this one's limit.
+     */
+    public Heap child() {
+        return new Heap(this);
+    }
+
+    /**
+     * Starts counting from zero for a new run.
+     *
+     * @param limit how many bytes the run may allocate, or a negative number for no limit
+     */
+    public void start(long limit) {
+        this.allocated.set(0);
+        this.limit = limit < 0 ? UNLIMITED : limit;
+    }
+
+    public long allocated() {
+        return allocated.get();
+    }
+
+    void charge(long bytes) {
+        long total = allocated.addAndGet(bytes);
+        long limit = this.limit;
+        if (limit != UNLIMITED && total > limit) {
+            throw new LoxBudgetExceededError("Out of memory.");
+        }
+        if (parent != null) {
+            parent.charge(bytes);
+        }
+    }
+
+    static long string(long length) {
+        return STRING + length;
+    }
+}
@@ -1,59 +1,339 @@
 package dev.rats159.lox.interpreting;
 
-import dev.rats159.lox.Lox;
 import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.Diagnostics;
+import dev.rats159.lox.errors.LoxBudgetExceededError;
+import dev.rats159.lox.errors.LoxBuiltinError;
 import dev.rats159.lox.errors.LoxRuntimeError;
 import dev.rats159.lox.errors.LoxTypeError;
 import dev.rats159.lox.lexing.Token;
 import dev.rats159.lox.lexing.TokenType;
 import dev.rats159.lox.parsing.Expression;
 import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Visitor<Void> {
 
-    public final VariableEnvironment globals = new VariableEnvironment();
-    private VariableEnvironment environment = globals;
-    private final Map<Expression, Integer> locals = new HashMap<>();
+    public final VariableEnvironment globals;
+    final Diagnostics diagnostics;
+    private final PrintStream out;
+    private final LoxBuiltin print;
+    private final Watchdog watchdog;
+    private final Heap heap;
+    private final Counters counters;
+    private final Set<LoxTask> tasks;
+    private Profiler profiler = null;
+    private AllocationProfiler allocationProfiler = null;
+    private ShadowStack shadow = null;
+    private int ticks = 0;
+    private long pending = 0;
+    private long calls = 0;
+    private final long[] allocations = new long[Allocation.values().length];
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private VariableEnvironment environment;
+    private Resolution resolution;
+
+    public Interpreter(Diagnostics diagnostics, PrintStream out) {
+        this(diagnostics, out, new Watchdog(), new Heap());
+    }
 
-    public Interpreter() {
-        globals.define("clock", new LoxBuiltin(0) {
+    /**
+     * An interpreter whose runs are bounded by {@code watchdog} and {@code heap}.
+     */
+    public Interpreter(Diagnostics diagnostics, PrintStream out, Watchdog watchdog, Heap heap) {
+        this.globals = new VariableEnvironment();
+        this.environment = globals;
+        this.diagnostics = diagnostics;
+        this.out = out;
+        this.watchdog = watchdog;
+        this.heap = heap;
+        this.counters = new Counters();
+        this.tasks = ConcurrentHashMap.newKeySet();
+
+        this.print = new LoxBuiltin(1) {
             @Override
             public String name() {
-                return "clock";
+                return "print";
             }
 
             @Override
             public LoxObject call(Interpreter interpreter, List<LoxObject> args) {
-                return new LoxNumber(System.currentTimeMillis());
+                print(args.getFirst());
+                return null;
             }
-        });
+        };
 
-        globals.define("print", new LoxBuiltin(1) {
+        globals.define("clock", new LoxBuiltin(0) {
             @Override
             public String name() {
-                return "print";
+                return "clock";
             }
 
             @Override
             public LoxObject call(Interpreter interpreter, List<LoxObject> args) {
-                System.out.println(args.getFirst().toLangString());
-                return null;
+                return new LoxNumber(System.currentTimeMillis());
             }
         });
+
+        globals.define("print", print);
+
+        globals.define("freeze", LoxBuiltin.of("freeze", 1, (interpreter, args) -> {
+            LoxObject value = args.getFirst();
+            if (value != null) {
+                LoxFreezable.checkFreezable(value);
+            }
+            if (value instanceof LoxFreezable freezable) {
+                freezable.freeze();
+            }
+            return value;
+        }));
+
+        ConcurrencyBuiltins.define(globals);
+        ListBuiltins.define(globals);
+        ParallelBuiltins.define(globals);
+        BenchBuiltins.define(globals);
+    }
+
+    private Interpreter(Interpreter parent) {
+        this.globals = parent.globals;
+        this.environment = globals;
+        this.diagnostics = parent.diagnostics;
+        this.out = parent.out;
+        this.print = parent.print;
+        this.watchdog = parent.watchdog;
+        this.heap = parent.heap;
+        this.counters = parent.counters;
+        this.tasks = parent.tasks;
+        this.resolution = parent.resolution;
+        this.profiler = parent.profiler;
+        this.allocationProfiler = parent.allocationProfiler;
+        if (parent.shadow != null) {
+            this.shadow = new ShadowStack(parent.shadow);
+            if (profiler != null) {
+                profiler.register(shadow);
+            }
+        }
+    }
+
+    /**
+     * An interpreter for running Lox code on another thread. It shares this interpreter's globals and output, but
+     * keeps its own current environment.
+     */
+    public Interpreter fork() {
+        return new Interpreter(this);
     }
 
-    public void interpret(List<Statement> statements) {
+    public Watchdog watchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Called on every loop back-edge and function entry. Counts down locally and checks in with the
+     * {@link Watchdog}, which may stop the script, every so often.
+     */
+    public void safepoint() {
+        if (--ticks <= 0) {
+            flushCounters();
+            ticks = watchdog.checkIn();
+        }
+    }
+
+    /**
+     * Counts a Lox function call, for {@link Counters}.
+     */
+    public void countCall() {
+        calls++;
+    }
+
+    public Counters counters() {
+        return counters;
+    }
+
+    /**
+     * Keeps track of a spawned task until it is joined or succeeds, so its error can't go unreported.
+     */
+    public void track(LoxTask task) {
+        tasks.add(task);
+    }
+
+    public void untrack(LoxTask task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * Reports the errors of tasks that failed without anyone joining them. Tasks still running are left for the end
+     * of a later run to report, so errors are only ever reported from the thread running the context.
+     */
+    public void reportFailedTasks() {
+        for (LoxTask task : tasks) {
+            if (task.isDone()) {
+                tasks.remove(task);
+                LoxRuntimeError error = task.error();
+                if (error != null) {
+                    diagnostics.runtimeError(error);
+                }
+            }
+        }
+    }
+
+    private void flushCounters() {
+        counters.add(calls, allocations, cacheHits, cacheMisses);
+        calls = 0;
+        Arrays.fill(allocations, 0);
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+
+    public Heap heap() {
+        return heap;
+    }
+
+    /**
+     * Keeps a {@link ShadowStack} for {@code profiler} to sample, here and in every interpreter forked from now on.
+     */
+    public void profile(Profiler profiler) {
+        this.profiler = profiler;
+        profiler.register(keepShadowStack());
+    }
+
+    /**
+     * Reports every allocation to {@code allocations}, here and in every interpreter forked from now on.
+     */
+    public void trackAllocations(AllocationProfiler allocations) {
+        this.allocationProfiler = allocations;
+        keepShadowStack();
+    }
+
+    private ShadowStack keepShadowStack() {
+        if (shadow == null) {
+            shadow = new ShadowStack();
+        }
+        return shadow;
+    }
+
+    /**
+     * The stack the profilers look at, or null if this interpreter isn't being profiled.
+     */
+    public ShadowStack shadowStack() {
+        return shadow;
+    }
+
+    /**
+     * Charges {@code bytes} to the context's {@link Heap}. Small charges are batched, so only fail once a batch is
+     * passed on.
+     */
+    public void allocate(Allocation kind, long bytes) {
+        if (allocationProfiler != null) {
+            allocationProfiler.record(shadow, kind, bytes);
+        }
+        allocations[kind.ordinal()]++;
+        pending += bytes;
+        if (pending >= Heap.BATCH) {
+            flushAllocations();
+        }
+    }
+
+    /**
+     * Charges {@code bytes} right away, failing before something that big is actually allocated.
+     */
+    void reserve(Allocation kind, long bytes) {
+        if (allocationProfiler != null) {
+            allocationProfiler.record(shadow, kind, bytes);
+        }
+        allocations[kind.ordinal()]++;
+        pending += bytes;
+        flushAllocations();
+    }
+
+    /**
+     * Binds {@code method} to {@code instance}, charging for the new function and its environment.
+     */
+    public LoxFunction bind(LoxFunction method, LoxInstance instance) {
+        allocate(Allocation.FUNCTION, Heap.BOUND_METHOD);
+        return method.bind(instance);
+    }
+
+    /**
+     * Reads the property {@code name} of {@code instance}, charging for the bound method it makes if {@code name} is
+     * a method. Frozen instances hand out the same bound method every time, so those are free.
+     */
+    LoxObject property(LoxInstance instance, Token name) {
+        boolean cached = instance.hasBoundMethod(name.lexeme());
+        LoxObject value = instance.get(name);
+        if (value instanceof LoxFunction && instance.findMethod(name.lexeme()) != null) {
+            if (cached) {
+                cacheHits++;
+            } else {
+                cacheMisses++;
+                if (!instance.isFrozen()) {
+                    allocate(Allocation.FUNCTION, Heap.BOUND_METHOD);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Passes any batched charges on to the {@link Heap}, and counts on to the {@link Counters}.
+     */
+    public void flushAllocations() {
+        flushCounters();
+        long bytes = pending;
+        pending = 0;
+        try {
+            heap.charge(bytes);
+        } catch (LoxBudgetExceededError e) {
+            throw watchdog.exhaust(e.getMessage()); // Stops this run's isolates too
+        }
+    }
+
+    public VariableEnvironment newEnvironment(VariableEnvironment enclosing) {
+        allocate(Allocation.ENVIRONMENT, Heap.ENVIRONMENT);
+        return new VariableEnvironment(enclosing);
+    }
+
+    /**
+     * Makes the next safepoint check in, so a new run is held to its own budget right away.
+     */
+    void resetSafepoints() {
+        ticks = 0;
+    }
+
+    public void interpret(List<Statement> statements, Resolution resolution) {
+        this.resolution = resolution;
+        resetSafepoints();
+        if (shadow != null) {
+            shadow.push("script", 0);
+        }
         try {
             for (Statement statement : statements) {
                 execute(statement);
             }
+            flushAllocations();
+        } catch (LoxRuntimeError e) {
+            diagnostics.runtimeError(e);
+        } finally {
+            if (shadow != null) {
+                shadow.truncate(0);
+            }
+        }
+    }
+
+    /**
+     * Runs {@code function} as a whole program, reporting any error it runs into.
+     */
+    public void interpret(LoxFunction function) {
+        resetSafepoints();
+        try {
+            function.call(this, List.of());
+            flushAllocations();
         } catch (LoxRuntimeError e) {
-            Lox.runtimeError(e);
+            diagnostics.runtimeError(e);
         }
     }
 
@@ -62,82 +342,96 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
         LoxObject left = evaluate(expression.left());
         LoxObject right = evaluate(expression.right());
 
-        return switch (expression.operator().type()) {
-            case MINUS -> {
+        return binary(expression.operator(), left, right);
+    }
+
+    LoxObject binary(Token operator, LoxObject left, LoxObject right) {
+        return switch (operator.type()) {
+            case MINUS, MINUS_EQUAL, MINUS_MINUS -> {
                 if(left instanceof LoxSubtractable l && right instanceof LoxSubtractable r){
                     yield l.subtract(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Unsubtractable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Unsubtractable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case SLASH -> {
                 if(left instanceof LoxDivisible l && right instanceof LoxDivisible r){
                     yield l.divide(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Undivisible types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Undivisible types `%s` and `%s`".formatted(left.type(),right.type()));
 
             }
             case STAR -> {
                 try{
                     if(left instanceof LoxMultipliable l && right instanceof LoxMultipliable r){
+                        if (left instanceof LoxString string && right instanceof LoxNumber count) {
+                            reserve(Allocation.STRING, Heap.string(repeatedLength(string, count)));
+                        } else if (right instanceof LoxString string && left instanceof LoxNumber count) {
+                            reserve(Allocation.STRING, Heap.string(repeatedLength(string, count)));
+                        }
                         yield l.multiply(r);
                     }
                 }catch(LoxTypeError err){
-                    throw new LoxRuntimeError(expression.operator(),err.getMessage());
+                    throw new LoxRuntimeError(operator,err.getMessage());
                 }
-                throw new LoxRuntimeError(expression.operator(), "Unmultipliable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Unmultipliable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case MOD -> {
                 if(left instanceof LoxModuloable l && right instanceof LoxModuloable r){
                     yield l.mod(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Unmoduloable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Unmoduloable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
-            case PLUS -> {
+            case PLUS, PLUS_EQUAL, PLUS_PLUS -> {
                 try{
                     if (left instanceof LoxAddable l && right instanceof LoxAddable r) {
-                        yield l.add(r);
+                        LoxAddable sum = l.add(r);
+                        if (sum instanceof LoxString string && sum != left && sum != right) {
+                            // A rope is charged for its whole text up front: almost anything that reads it flattens it
+                            allocate(Allocation.STRING, Heap.string(string.length()));
+                        }
+                        yield sum;
                     }
                 }catch(LoxTypeError err){
-                    throw new LoxRuntimeError(expression.operator(),err.getMessage());
+                    throw new LoxRuntimeError(operator,err.getMessage());
                 }
 
-                throw new LoxRuntimeError(expression.operator(), "Unaddable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Unaddable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case GREATER -> {
                 if (left instanceof LoxComparable l && right instanceof LoxComparable r) {
                     yield l.greater(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case GREATER_EQUAL -> {
                 if (left instanceof LoxComparable l && right instanceof LoxComparable r) {
                     yield l.greaterOrEqual(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case LESS -> {
                 if (left instanceof LoxComparable l && right instanceof LoxComparable r) {
                     yield l.less(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case LESS_EQUAL -> {
                 if (left instanceof LoxComparable l && right instanceof LoxComparable r) {
                     yield l.lessOrEqual(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Incomparable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case BANG_EQUAL -> {
                 if (left instanceof LoxEquateable l && right instanceof LoxEquateable r) {
                     yield l.unequal(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Inequatable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Inequatable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             case EQUAL_EQUAL -> {
                 if (left instanceof LoxEquateable l && right instanceof LoxEquateable r) {
                     yield l.equal(r);
                 }
-                throw new LoxRuntimeError(expression.operator(), "Inequatable types `%s` and `%s`".formatted(left.type(),right.type()));
+                throw new LoxRuntimeError(operator, "Inequatable types `%s` and `%s`".formatted(left.type(),right.type()));
             }
             default -> null;
         };
@@ -157,18 +451,22 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
     public LoxObject visitUnaryExpression(Expression.Unary expr) {
         LoxObject right = evaluate(expr.right());
 
-        return switch (expr.operator().type()) {
+        return unary(expr.operator(), right);
+    }
+
+    static LoxObject unary(Token operator, LoxObject right) {
+        return switch (operator.type()) {
             case MINUS-> {
                 if (right instanceof LoxNegatable r) {
                     yield r.negate();
                 }
-                throw new LoxRuntimeError(expr.operator(), "Unnegatable type `%s`".formatted(right.type()));
+                throw new LoxRuntimeError(operator, "Unnegatable type `%s`".formatted(right.type()));
             }
             case BANG -> {
                 if (right instanceof LoxInvertable r) {
                     yield r.invert();
                 }
-                throw new LoxRuntimeError(expr.operator(), "Uninvertable type `%s`".formatted(right.type()));
+                throw new LoxRuntimeError(operator, "Uninvertable type `%s`".formatted(right.type()));
             }
             default -> null; // Unreachable
         };
@@ -183,7 +481,14 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
     @Override
     public LoxObject visitAssignmentExpression(Expression.Assignment assignment) {
         LoxObject value = evaluate(assignment.value());
-        this.environment.assign(assignment.name(), value);
+
+        // Globals are this interpreter's, even in a function declared by another context's script
+        Integer distance = resolution.depth(assignment);
+        if (distance == null) {
+            globals.assign(assignment.name(), value);
+        } else {
+            environment.assignAt(distance, assignment.name().lexeme(), value);
+        }
         return value;
     }
 
@@ -209,18 +514,46 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
     public LoxObject visitCallExpression(Expression.Call call) {
         LoxObject callee = evaluate(call.callee());
 
+        return call(callee, call.paren(), call.args());
+    }
+
+    private LoxObject call(LoxObject callee, Token paren, List<Expression> arguments) {
         List<LoxObject> args = new ArrayList<>();
-        for (Expression argument : call.args()) {
+        for (Expression argument : arguments) {
             args.add(evaluate(argument));
         }
 
         if (!(callee instanceof LoxCallable function)) {
-            throw new LoxRuntimeError(call.paren(), "This type is not callable.");
+            throw new LoxRuntimeError(paren, "This type is not callable.");
         } else if (args.size() != function.arity()) {
-            throw new LoxRuntimeError(call.paren(), "Expected " + function.arity() + " arguments but got " + args.size() + ".");
+            throw new LoxRuntimeError(paren, "Expected " + function.arity() + " arguments but got " + args.size() + ".");
         } else {
+            return callBuiltin(function, paren, args);
+        }
+    }
+
+    /**
+     * Calls {@code function}, reporting errors from builtins at {@code paren}.
+     */
+    LoxObject callBuiltin(LoxCallable function, Token paren, List<LoxObject> args) {
+        try {
             return function.call(this, args);
+        } catch (LoxBuiltinError e) {
+            watchdog.check(); // Blocking builtins fail when interrupted by terminate()
+            throw new LoxRuntimeError(paren, e.getMessage());
+        }
+    }
+
+    private List<LoxObject> arguments(LoxCallable function, Token paren, List<Expression> arguments) {
+        List<LoxObject> args = new ArrayList<>();
+        for (Expression argument : arguments) {
+            args.add(evaluate(argument));
+        }
+
+        if (args.size() != function.arity()) {
+            throw new LoxRuntimeError(paren, "Expected " + function.arity() + " arguments but got " + args.size() + ".");
         }
+        return args;
     }
 
     @Override
@@ -228,7 +561,7 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
         Object obj = evaluate(get.object());
 
         if (obj instanceof LoxInstance instance) {
-            return instance.get(get.name());
+            return property(instance, get.name());
         }
 
         throw new LoxRuntimeError(get.name(), "Only instances have properties.");
@@ -255,7 +588,7 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
 
     @Override
     public LoxObject visitSuperExpression(Expression.Super expr) {
-        int distance = locals.get(expr);
+        int distance = resolution.depth(expr);
         LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
 
         LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
@@ -265,10 +598,162 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
         if(method == null){
             throw new LoxRuntimeError(expr.method(),"Method does not exist on superclass");
         }
-        return method.bind(object);
+        return bind(method, object);
+    }
+
+    @Override
+    public LoxObject visitHoistedExpression(Expression.Hoisted hoisted) {
+        int distance = resolution.depth(hoisted);
+        LoxObject value = environment.getAt(distance, hoisted.slot().lexeme());
+
+        if (value == Expression.Hoisted.EMPTY) {
+            value = evaluate(hoisted.inner());
+            environment.assignAt(distance, hoisted.slot().lexeme(), value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public LoxObject visitReducedExpression(Expression.Reduced reduced) {
+        LoxObject operand = evaluate(reduced.operand());
+
+        return reduce(reduced, operand);
+    }
+
+    private static long repeatedLength(LoxString string, LoxNumber count) {
+        return (long) Math.min(string.length() * Math.max(count.value, 0), Long.MAX_VALUE / 2);
+    }
+
+    LoxObject reduce(Expression.Reduced reduced, LoxObject operand) {
+        if (operand instanceof LoxNumber num) {
+            return switch (reduced.reduction()) {
+                case IDENTITY -> num;
+                case DOUBLE -> new LoxNumber(num.value + num.value);
+                case HALVE -> new LoxNumber(num.value * 0.5);
+                case FRACTION -> new LoxNumber(fraction(num.value));
+            };
+        }
+
+        return binary(reduced.operator(), operand, reduced.constant().value());
+    }
+
+    @Override
+    public LoxObject visitComparisonExpression(Expression.Comparison comparison) {
+        LoxObject left = lookUpVariable(comparison.left().name(), comparison.left());
+        LoxObject right = comparison.right() instanceof Expression.Literal literal
+                ? literal.value()
+                : evaluate(comparison.right());
+
+        if (left instanceof LoxNumber l && right instanceof LoxNumber r) {
+            return new LoxBoolean(switch (comparison.operator().type()) {
+                case GREATER -> l.value > r.value;
+                case GREATER_EQUAL -> l.value >= r.value;
+                case LESS -> l.value < r.value;
+                case LESS_EQUAL -> l.value <= r.value;
+                case EQUAL_EQUAL -> l.value == r.value;
+                case BANG_EQUAL -> l.value != r.value;
+                default -> throw new IllegalStateException("Not a comparison: " + comparison.operator());
+            });
+        }
+
+        return binary(comparison.operator(), left, right);
+    }
+
+    @Override
+    public LoxObject visitCompoundAssignmentExpression(Expression.CompoundAssignment assignment) {
+        Integer distance = resolution.depth(assignment);
+        String name = assignment.name().lexeme();
+
+        // Read before evaluating the value, like `x = x + value`, so a value that assigns x is overwritten
+        VariableEnvironment scope = distance == null ? globals : environment.ancestor(distance);
+        LoxObject current = distance == null ? globals.get(assignment.name()) : scope.getAt(0, name);
+        LoxObject value = evaluate(assignment.value());
+        LoxObject updated = update(assignment.operator(), current, value);
+
+        scope.assignAt(0, name, updated);
+        return assignment.postfix() ? current : updated;
+    }
+
+    @Override
+    public LoxObject visitCompoundSetExpression(Expression.CompoundSet set) {
+        LoxObject object = evaluate(set.object());
+
+        if (!(object instanceof LoxInstance instance)) {
+            throw new LoxRuntimeError(set.name(), "Only instances have fields.");
+        }
+
+        // Read before evaluating the value, then write back to the same field without looking it up again
+        LoxInstance.Field field = instance.field(set.name());
+        LoxObject current = field.value();
+        LoxObject updated = update(set.operator(), current, evaluate(set.value()));
+
+        field.store(set.name(), updated);
+        return set.postfix() ? current : updated;
+    }
+
+    @Override
+    public LoxObject visitInterpolationExpression(Expression.Interpolation interpolation) {
+        List<Expression> parts = interpolation.parts();
+        LoxObject[] values = new LoxObject[parts.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(parts.get(i));
+        }
+
+        return interpolate(interpolation, values);
+    }
+
+    LoxString interpolate(Expression.Interpolation interpolation, LoxObject[] values) {
+        try {
+            LoxString string = LoxString.join(values);
+            allocate(Allocation.STRING, Heap.string(string.length()));
+            return string;
+        } catch (LoxTypeError err) {
+            throw new LoxRuntimeError(interpolation.start(), err.getMessage());
+        }
+    }
+
+    LoxObject update(Token operator, LoxObject current, LoxObject value) {
+        if (current instanceof LoxNumber num && value instanceof LoxNumber delta) {
+            return new LoxNumber(switch (operator.type()) {
+                case PLUS, PLUS_EQUAL, PLUS_PLUS -> num.value + delta.value;
+                default -> num.value - delta.value;
+            });
+        }
+
+        return binary(operator, current, value);
+    }
+
+    @Override
+    public LoxObject visitInvokeExpression(Expression.Invoke invoke) {
+        LoxObject object = evaluate(invoke.object());
+
+        if (!(object instanceof LoxInstance instance)) {
+            throw new LoxRuntimeError(invoke.name(), "Only instances have properties.");
+        }
+
+        LoxFunction method = instance.findMethod(invoke.name().lexeme());
+        if (method == null) {
+            return call(instance.get(invoke.name()), invoke.paren(), invoke.args());
+        }
+
+        return method.invoke(this, instance, arguments(method, invoke.paren(), invoke.args()));
+    }
+
+    /**
+     * Same result as {@code value % 1}, including the sign of zero, without going through {@code fmod}.
+     */
+    private static double fraction(double value) {
+        if (Math.abs(value) >= 0x1p52) {
+            return value % 1;
+        }
+        return Math.copySign(value - (long) value, value);
     }
 
     private LoxObject evaluate(Expression expr) {
+        if (shadow != null) {
+            shadow.line(Profiler.line(expr));
+        }
         return expr.accept(this);
     }
 
@@ -292,7 +777,13 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
 
     @Override
     public Void visitBlockStatement(Statement.Block block) {
-        executeBlock(block.statements(), new VariableEnvironment(environment));
+        if (block.declares()) {
+            executeBlock(block.statements(), newEnvironment(environment));
+        } else {
+            for (Statement statement : block.statements()) {
+                execute(statement);
+            }
+        }
         return null;
     }
 
@@ -311,14 +802,48 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
     public Void visitWhileStatement(Statement.While whileStatement) {
         while (evaluate(whileStatement.condition()).isTruthy()) {
             execute(whileStatement.body());
+            safepoint();
+        }
+        return null;
+
+    }
+
+    @Override
+    public Void visitForStatement(Statement.For forStatement) {
+        if (!(forStatement.initializer() instanceof Statement.VariableStatement)) {
+            loop(forStatement);
+            return null;
+        }
+
+        VariableEnvironment previous = this.environment;
+        try {
+            this.environment = newEnvironment(previous);
+            loop(forStatement);
+        } finally {
+            this.environment = previous;
         }
         return null;
+    }
+
+    private void loop(Statement.For forStatement) {
+        if (forStatement.initializer() != null) {
+            execute(forStatement.initializer());
+        }
+
+        while (forStatement.condition() == null || evaluate(forStatement.condition()).isTruthy()) {
+            execute(forStatement.body());
 
+            if (forStatement.increment() != null) {
+                evaluate(forStatement.increment());
+            }
+            safepoint();
+        }
     }
 
     @Override
     public Void visitFunction(Statement.Function statement) {
-        LoxFunction fn = new LoxFunction(statement, this.environment, false);
+        allocate(Allocation.FUNCTION, Heap.FUNCTION);
+        LoxFunction fn = new LoxFunction(statement, this.environment, false, resolution);
 
         this.environment.define(statement.name().lexeme(), fn);
         return null;
@@ -327,11 +852,73 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
     @Override
     public Void visitReturnStatement(Statement.Return returnStatement) {
         LoxObject value = null;
-        if (returnStatement.value() != null) value = evaluate(returnStatement.value());
+        if (returnStatement.value() != null) {
+            Expression tail = unwrap(returnStatement.value());
+            if (resolution.isTailCall(tail)) {
+                throw tailCall(tail);
+            }
+
+            value = evaluate(returnStatement.value());
+        }
 
         throw new LoxReturn(value);
     }
 
+    /**
+     * Evaluates everything a tail call needs except the call itself. Only Lox functions are left for the caller's
+     * trampoline to run; anything else is simply called.
+     */
+    private LoxReturn tailCall(Expression expression) {
+        if (expression instanceof Expression.Invoke invoke) {
+            LoxObject object = evaluate(invoke.object());
+            if (!(object instanceof LoxInstance instance)) {
+                throw new LoxRuntimeError(invoke.name(), "Only instances have properties.");
+            }
+
+            LoxFunction method = instance.findMethod(invoke.name().lexeme());
+            if (method == null) {
+                return new LoxReturn(call(instance.get(invoke.name()), invoke.paren(), invoke.args()));
+            }
+
+            return method.tailInvoke(instance, arguments(method, invoke.paren(), invoke.args()));
+        }
+
+        Expression.Call call = (Expression.Call) expression;
+        LoxObject callee = evaluate(call.callee());
+        if (!(callee instanceof LoxFunction function)) {
+            return new LoxReturn(call(callee, call.paren(), call.args()));
+        }
+
+        return function.tailCall(arguments(function, call.paren(), call.args()));
+    }
+
+    private static Expression unwrap(Expression expression) {
+        while (expression instanceof Expression.Grouping grouping) {
+            expression = grouping.inner();
+        }
+        return expression;
+    }
+
+    @Override
+    public Void visitPrintStatement(Statement.Print printStatement) {
+        LoxObject callee = lookUpVariable(printStatement.callee().name(), printStatement.callee());
+
+        if (callee == print) {
+            print(evaluate(printStatement.value()));
+        } else {
+            call(callee, printStatement.paren(), List.of(printStatement.value()));
+        }
+        return null;
+    }
+
+    boolean isPrint(LoxObject callee) {
+        return callee == print;
+    }
+
+    void print(LoxObject value) {
+        out.println(value.toLangString());
+    }
+
     @Override
     public Void visitClassStatement(Statement.Class stmt) {
         Object superclass = null;
@@ -350,11 +937,12 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
         Map<String, LoxFunction> methods = new HashMap<>();
 
         for (Statement.Function method : stmt.methods()) {
-            LoxFunction function = new LoxFunction(method, environment, method.name().lexeme().equals("init"));
+            allocate(Allocation.FUNCTION, Heap.FUNCTION);
+            LoxFunction function = new LoxFunction(method, environment, method.name().lexeme().equals("init"), resolution);
             methods.put(method.name().lexeme(), function);
         }
 
-        LoxClass klass = new LoxClass(stmt.name().lexeme(), (LoxClass) superclass, methods);
+        LoxClass klass = new LoxClass(stmt.name().lexeme(), stmt.name().line(), (LoxClass) superclass, methods);
 
         environment.assign(stmt.name(), klass);
         return null;
@@ -373,16 +961,28 @@ public class Interpreter implements Expression.Visitor<LoxObject>, Statement.Vis
         }
     }
 
-    private void execute(Statement statement) {
-        statement.accept(this);
+    /**
+     * Runs a function body, which may have been resolved as part of a different program than the one running.
+     */
+    public void executeBlock(List<Statement> statements, VariableEnvironment environment, Resolution resolution) {
+        Resolution previous = this.resolution;
+        try {
+            this.resolution = resolution;
+            executeBlock(statements, environment);
+        } finally {
+            this.resolution = previous;
+        }
     }
 
-    public void resolve(Expression expr, int depth) {
-        this.locals.put(expr, depth);
+    private void execute(Statement statement) {
+        if (shadow != null) {
+            shadow.line(Profiler.line(statement));
+        }
+        statement.accept(this);
     }
 
     private LoxObject lookUpVariable(Token name, Expression expression) {
-        Integer distance = this.locals.getOrDefault(expression, null);
+        Integer distance = this.resolution.depth(expression);
 
         if (distance != null) {
             return this.environment.getAt(distance, name.lexeme());
@@ -0,0 +1,41 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.LoxBuiltin;
+import dev.rats159.lox.constructs.LoxList;
+import dev.rats159.lox.constructs.LoxNumber;
+
+/**
+ * `list`, `append`, `get`, `set` and `length`, the bare minimum for building and reading lists.
+ */
+final class ListBuiltins {
+    private ListBuiltins() {
+    }
+
+    static void define(VariableEnvironment globals) {
+        globals.define("list", LoxBuiltin.of("list", 0, (interpreter, args) -> {
+            interpreter.allocate(Allocation.LIST, Heap.LIST);
+            return new LoxList();
+        }));
+
+        globals.define("append", LoxBuiltin.of("append", 2, (interpreter, args) -> {
+            LoxList list = Arguments.list(args.getFirst());
+            interpreter.allocate(Allocation.LIST, Heap.REFERENCE);
+            list.add(args.get(1));
+            return list;
+        }));
+
+        globals.define("get", LoxBuiltin.of("get", 2, (interpreter, args) -> {
+            LoxList list = Arguments.list(args.getFirst());
+            return list.get(Arguments.index(list, args.get(1)));
+        }));
+
+        globals.define("set", LoxBuiltin.of("set", 3, (interpreter, args) -> {
+            LoxList list = Arguments.list(args.getFirst());
+            list.set(Arguments.index(list, args.get(1)), args.get(2));
+            return args.get(2);
+        }));
+
+        globals.define("length", LoxBuiltin.of("length", 1, (interpreter, args) ->
+          new LoxNumber(Arguments.list(args.getFirst()).size())));
+    }
+}
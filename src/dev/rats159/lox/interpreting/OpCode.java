@@ -0,0 +1,45 @@
+package dev.rats159.lox.interpreting;
+
+/**
+ * Instructions understood by the {@link StackInterpreter}. Operands are written as {@code (a, b)}; "const" means an
+ * index into the chunk's constants and "target" an instruction index.
+ */
+final class OpCode {
+    private OpCode() {
+    }
+
+    static final int CONSTANT = 0;        // (const value) push a value
+    static final int POP = 1;             // drop the top of the stack
+    static final int GET_LOCAL = 2;       // (depth, const name)
+    static final int GET_GLOBAL = 3;      // (const token)
+    static final int ASSIGN = 4;          // (const token, depth) assign the top of the stack, leaving it there
+    static final int DEFINE = 5;          // (const name) pop into a new variable in the current environment
+    static final int PUSH_SCOPE = 6;
+    static final int POP_SCOPE = 7;
+    static final int BINARY = 8;          // (const operator)
+    static final int UNARY = 9;           // (const operator)
+    static final int REDUCE = 10;         // (const Expression.Reduced)
+    static final int JUMP = 11;           // (target)
+    static final int JUMP_IF_FALSE = 12;  // (target) pops the condition
+    static final int JUMP_IF_FALSY = 13;  // (target) leaves the condition, for `and`
+    static final int JUMP_IF_TRUTHY = 14; // (target) leaves the condition, for `or`
+    static final int CALL = 15;           // (argument count, const paren)
+    static final int GET_METHOD = 16;     // (const Expression.Invoke) pops the object, pushes callee and receiver
+    static final int INVOKE = 17;         // (argument count, const Expression.Invoke)
+    static final int PRINT = 18;          // (const paren) like CALL with one argument, unless the callee is print
+    static final int RETURN = 19;
+    static final int GET_PROPERTY = 20;   // (const name token)
+    static final int CHECK_FIELDS = 21;   // (const name token) errors unless the top of the stack is an instance
+    static final int SET_PROPERTY = 22;   // (const name token)
+    static final int SUPER = 23;          // (const Expression.Super)
+    static final int CLOSURE = 24;        // (const Statement.Function)
+    static final int CLASS = 25;          // (const Statement.Class) pops the superclass
+    static final int LOAD_SLOT = 26;      // (const Expression.Hoisted, target) jumps past the hoisted code if cached
+    static final int STORE_SLOT = 27;     // (const Expression.Hoisted)
+    static final int COMPOUND = 28;       // (const Expression.CompoundAssignment, depth) pops the value, then the old one
+    static final int COMPOUND_SET = 29;   // (const Expression.CompoundSet) pops the value, the old one and the field
+    static final int TAIL_CALL = 30;      // (argument count, const paren) CALL, reusing the frame for Lox functions
+    static final int TAIL_INVOKE = 31;    // (argument count, const Expression.Invoke) INVOKE, likewise
+    static final int INTERPOLATE = 32;    // (part count, const Expression.Interpolation) pops the parts
+    static final int GET_FIELD = 33;      // (const name token) pops an instance, pushes one of its fields and its value
+}
@@ -0,0 +1,148 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * `parallelMap`, `parallelReduce` and `parallelFor`. The range being worked on is split in halves until the pieces
+ * are small enough, and each piece runs on the common fork-join pool with its own {@link Interpreter#fork() forked}
+ * interpreter. Pieces see the same globals, and the same closures, as the script that started them, and nothing stops
+ * them writing to either: the function is expected to only read them, since writes from different pieces race.
+ */
+final class ParallelBuiltins {
+    /**
+     * How many pieces to aim for per worker, so a few slow pieces don't leave the rest of the pool idle.
+     */
+    private static final int PIECES_PER_WORKER = 4;
+
+    private ParallelBuiltins() {
+    }
+
+    static void define(VariableEnvironment globals) {
+        globals.define("parallelMap", LoxBuiltin.of("parallelMap", 2, (interpreter, args) -> {
+            LoxList list = Arguments.list(args.getFirst());
+            LoxCallable function = Arguments.function(args.get(1), 1);
+
+            interpreter.reserve(Allocation.LIST, Heap.LIST + Heap.REFERENCE * list.size());
+            LoxObject[] results = new LoxObject[list.size()];
+            new Apply(interpreter, 0, list.size(), grain(list.size()), (child, i) ->
+              results[i] = function.call(child, Arrays.asList(list.get(i)))
+            ).invoke();
+            return new LoxList(Arrays.asList(results));
+        }));
+
+        globals.define("parallelReduce", LoxBuiltin.of("parallelReduce", 3, (interpreter, args) -> {
+            LoxList list = Arguments.list(args.getFirst());
+            LoxCallable function = Arguments.function(args.get(1), 2);
+
+            return new Reduce(interpreter, list, function, args.get(2), 0, list.size(), grain(list.size())).invoke();
+        }));
+
+        globals.define("parallelFor", LoxBuiltin.of("parallelFor", 3, (interpreter, args) -> {
+            int start = Arguments.wholeNumber(args.getFirst(), "Start");
+            int end = Arguments.wholeNumber(args.get(1), "End");
+            LoxCallable function = Arguments.function(args.get(2), 1);
+
+            if (start < end) {
+                new Apply(interpreter, start, end, grain(end - start), (child, i) ->
+                  function.call(child, Arrays.asList(new LoxNumber(i)))
+                ).invoke();
+            }
+            return null;
+        }));
+    }
+
+    private static int grain(int size) {
+        return Math.max(1, size / (ForkJoinPool.getCommonPoolParallelism() * PIECES_PER_WORKER));
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(Interpreter interpreter, int index);
+    }
+
+    /**
+     * Runs {@code step} for every index in {@code [from, to)}.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private static final class Apply extends RecursiveAction {
+        private final Interpreter interpreter;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Step step;
+
+        Apply(Interpreter interpreter, int from, int to, int grain, Step step) {
+            this.interpreter = interpreter;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.step = step;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                Interpreter child = interpreter.fork();
+                for (int i = from; i < to; i++) {
+                    step.run(child, i);
+                }
+                child.flushAllocations();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Apply(interpreter, from, middle, grain, step), new Apply(interpreter, middle, to, grain, step));
+        }
+    }
+
+    /**
+     * Folds {@code list[from, to)} with {@code function}, starting every piece from {@code identity}.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private static final class Reduce extends RecursiveTask<LoxObject> {
+        private final Interpreter interpreter;
+        private final LoxList list;
+        private final LoxCallable function;
+        private final LoxObject identity;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Reduce(Interpreter interpreter, LoxList list, LoxCallable function, LoxObject identity, int from, int to, int grain) {
+            this.interpreter = interpreter;
+            this.list = list;
+            this.function = function;
+            this.identity = identity;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected LoxObject compute() {
+            if (to - from <= grain) {
+                Interpreter child = interpreter.fork();
+                LoxObject accumulator = identity;
+                for (int i = from; i < to; i++) {
+                    accumulator = function.call(child, Arrays.asList(accumulator, list.get(i)));
+                }
+                child.flushAllocations();
+                return accumulator;
+            }
+
+            int middle = (from + to) >>> 1;
+            Reduce left = new Reduce(interpreter, list, function, identity, from, middle, grain);
+            Reduce right = new Reduce(interpreter, list, function, identity, middle, to, grain);
+            right.fork();
+            LoxObject leftResult = left.compute();
+            LoxObject rightResult = right.join();
+
+            return function.call(interpreter.fork(), Arrays.asList(leftResult, rightResult));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A sampling CPU profiler for Lox code. Every interpreter of a profiled context keeps a {@link ShadowStack}; a
+ * background thread looks at all of them {@code rate} times a second and counts how often each stack comes up.
+ * The counts are written in the collapsed-stack format flame graph tools read: one `frame;frame;frame count` line
+ * per distinct stack.
+ */
+public final class Profiler {
+    private final long interval;
+    private final Set<ShadowStack> stacks = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Map<String, Long> samples = new HashMap<>();
+    private volatile boolean running = false;
+    private Thread sampler = null;
+
+    /**
+     * @param rate how many samples to take per second
+     */
+    public Profiler(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive.");
+        }
+        this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+
+    /**
+     * Starts sampling {@code stack}, which an interpreter keeps up to date. Stacks are forgotten once their
+     * interpreter is.
+     */
+    void register(ShadowStack stack) {
+        stacks.add(stack);
+    }
+
+    public void start() {
+        if (sampler != null) {
+            return;
+        }
+        running = true;
+        sampler = Thread.ofPlatform().name("lox-profiler").daemon().start(() -> {
+            while (running) {
+                sample();
+                LockSupport.parkNanos(interval);
+            }
+        });
+    }
+
+    /**
+     * Stops sampling, waiting for the sampler to finish its last sample.
+     */
+    public void stop() {
+        if (sampler == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sampler = null;
+    }
+
+    private void sample() {
+        ShadowStack[] snapshot;
+        synchronized (stacks) {
+            snapshot = stacks.toArray(new ShadowStack[0]);
+        }
+
+        for (ShadowStack stack : snapshot) {
+            String collapsed = stack.collapsed();
+            if (collapsed != null) {
+                synchronized (samples) {
+                    samples.merge(collapsed, 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every stack seen so far with how many samples it got, most frequent first.
+     */
+    public void writeCollapsed(PrintStream out) {
+        List<Map.Entry<String, Long>> entries;
+        synchronized (samples) {
+            entries = new ArrayList<>(samples.entrySet());
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        for (Map.Entry<String, Long> entry : entries) {
+            out.println(entry.getKey() + " " + entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * The line {@code expression} is on, or 0 if it has no token to tell.
+     */
+    static int line(Expression expression) {
+        return switch (expression) {
+            case Expression.Binary binary -> binary.operator().line();
+            case Expression.Unary unary -> unary.operator().line();
+            case Expression.Variable variable -> variable.name().line();
+            case Expression.Assignment assignment -> assignment.name().line();
+            case Expression.Logical logical -> logical.operator().line();
+            case Expression.Call call -> call.paren().line();
+            case Expression.Get get -> get.name().line();
+            case Expression.Set set -> set.name().line();
+            case Expression.This thisExpression -> thisExpression.keyword().line();
+            case Expression.Super superExpression -> superExpression.keyword().line();
+            case Expression.Hoisted hoisted -> hoisted.slot().line();
+            case Expression.Reduced reduced -> reduced.operator().line();
+            case Expression.Comparison comparison -> comparison.operator().line();
+            case Expression.Invoke invoke -> invoke.name().line();
+            case Expression.CompoundAssignment assignment -> assignment.name().line();
+            case Expression.CompoundSet set -> set.name().line();
+            case Expression.Interpolation interpolation -> interpolation.start().line();
+            case Expression.Grouping grouping -> line(grouping.inner());
+            default -> 0;
+        };
+    }
+
+    /**
+     * The line a declaration, `return` or `print` is on, or 0 for statements whose expressions tell the line instead.
+     */
+    static int line(Statement statement) {
+        return switch (statement) {
+            case Statement.VariableStatement variable -> variable.name().line();
+            case Statement.Function function -> function.name().line();
+            case Statement.Class classStatement -> classStatement.name().line();
+            case Statement.Return returnStatement -> returnStatement.keyword().line();
+            case Statement.Print print -> print.paren().line();
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package dev.rats159.lox.interpreting;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * The Lox calls one interpreter is in the middle of, kept for the {@link Profiler} and {@link AllocationProfiler}:
+ * each frame's function name and the line it is currently running. Only the interpreter's own thread writes to it;
+ * the sampling profiler reads it without locking, so a sample taken mid-call may be slightly off, which sampling
+ * tolerates.
+ */
+public final class ShadowStack {
+    private String[] names;
+    private int[] lines;
+    private int depth;
+
+    public ShadowStack() {
+        this.names = new String[64];
+        this.lines = new int[64];
+        this.depth = 0;
+    }
+
+    /**
+     * A stack for an interpreter forked from {@code parent}'s, starting out with a copy of its frames so that what a
+     * task does shows up under the call that started it.
+     */
+    ShadowStack(ShadowStack parent) {
+        String[] names = parent.names;
+        int[] lines = parent.lines;
+        int depth = Math.min(parent.depth, Math.min(names.length, lines.length));
+
+        this.names = Arrays.copyOf(names, Math.max(64, names.length));
+        this.lines = Arrays.copyOf(lines, Math.max(64, lines.length));
+        this.depth = depth;
+    }
+
+    public void push(String name, int line) {
+        if (depth == names.length) {
+            names = Arrays.copyOf(names, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+        names[depth] = name;
+        lines[depth] = line;
+        depth++;
+    }
+
+    public void pop() {
+        names[--depth] = null;
+    }
+
+    /**
+     * Records that the innermost frame has reached {@code line}.
+     */
+    public void line(int line) {
+        if (depth > 0 && line > 0) {
+            lines[depth - 1] = line;
+        }
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * The innermost frame's function, or null outside any frame.
+     */
+    String function() {
+        return depth == 0 ? null : names[depth - 1];
+    }
+
+    /**
+     * The line the innermost frame is running, or 0 outside any frame.
+     */
+    int currentLine() {
+        return depth == 0 ? 0 : lines[depth - 1];
+    }
+
+    /**
+     * Pops frames until only {@code depth} are left, for when an error unwinds past them.
+     */
+    void truncate(int depth) {
+        while (this.depth > depth) {
+            pop();
+        }
+    }
+
+    /**
+     * The stack outermost frame first, as `name:line` frames separated by semicolons, or null if it is empty.
+     */
+    String collapsed() {
+        String[] names = this.names;
+        int[] lines = this.lines;
+        int depth = Math.min(this.depth, Math.min(names.length, lines.length));
+        if (depth == 0) {
+            return null;
+        }
+
+        StringJoiner joiner = new StringJoiner(";");
+        for (int i = 0; i < depth; i++) {
+            String name = names[i];
+            joiner.add((name == null ? "?" : name) + ":" + lines[i]);
+        }
+        return joiner.toString();
+    }
+}
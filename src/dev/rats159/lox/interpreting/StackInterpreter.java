@@ -0,0 +1,473 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.constructs.*;
+import dev.rats159.lox.errors.LoxRuntimeError;
+import dev.rats159.lox.events.CallEvent;
+import dev.rats159.lox.events.InstantiationEvent;
+import dev.rats159.lox.events.LoxEvents;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+import dev.rats159.lox.resolving.Resolution;
+
+import java.util.*;
+
+import static dev.rats159.lox.interpreting.OpCode.*;
+
+/**
+ * Runs programs without recursing on the Java stack. Statements are compiled to {@link Chunk}s and Lox calls push a
+ * {@link Frame} onto a heap-allocated frame stack instead of calling back into Java, so recursion depth is bounded by
+ * {@code maxDepth} rather than by the thread's stack size.
+ * <p>
+ * Shares its globals and builtins with the tree-walking {@link Interpreter} it wraps. Builtins
+ * that call back into Lox functions still do so through that interpreter.
+ */
+public class StackInterpreter {
+    private static final class Frame {
+        final Chunk chunk;
+        final LoxFunction function;
+        final VariableEnvironment closure;
+        final int base;
+        VariableEnvironment environment;
+        int ip = 0;
+
+        /**
+         * Flight recorder events to finish when the frame returns, set only while they are enabled.
+         */
+        CallEvent call = null;
+        InstantiationEvent instantiation = null;
+
+        Frame(Chunk chunk, LoxFunction function, VariableEnvironment closure, VariableEnvironment environment, int base) {
+            this.chunk = chunk;
+            this.function = function;
+            this.closure = closure;
+            this.environment = environment;
+            this.base = base;
+        }
+    }
+
+    private final Interpreter interpreter;
+    private final int maxDepth;
+
+    private LoxObject[] stack = new LoxObject[256];
+    private int sp = 0;
+    private Frame[] frames = new Frame[64];
+    private int depth = 0;
+
+    public StackInterpreter(Interpreter interpreter, int maxDepth) {
+        this.interpreter = interpreter;
+        this.maxDepth = maxDepth;
+    }
+
+    public void interpret(List<Statement> statements, Resolution resolution) {
+        Chunk script = resolution.chunks().script(statements, resolution);
+
+        interpreter.resetSafepoints();
+        ShadowStack shadow = interpreter.shadowStack();
+        if (shadow != null) {
+            shadow.push("script", 0);
+        }
+
+        try {
+            run(new Frame(script, null, null, interpreter.globals, 0));
+            interpreter.flushAllocations();
+        } catch (LoxRuntimeError e) {
+            if (depth > 0 && frames[depth - 1].function != null) {
+                e.raisedIn(frames[depth - 1].function.declaration().name().lexeme());
+            }
+            interpreter.diagnostics.runtimeError(e);
+        } finally {
+            if (shadow != null) {
+                shadow.truncate(0);
+            }
+            Arrays.fill(stack, 0, sp, null);
+            Arrays.fill(frames, 0, depth, null);
+            sp = 0;
+            depth = 0;
+        }
+    }
+
+    private void run(Frame entry) {
+        pushFrame(entry);
+        Frame frame = entry;
+        ShadowStack shadow = interpreter.shadowStack();
+
+        while (true) {
+            Chunk chunk = frame.chunk;
+            int instruction = frame.ip++;
+            if (shadow != null && instruction < chunk.size()) {
+                shadow.line(chunk.line(instruction));
+            }
+
+            if (instruction == chunk.size()) {
+                frame = returnFrom(frame, null);
+                if (frame == null) {
+                    return;
+                }
+                continue;
+            }
+
+            int a = chunk.a(instruction);
+            int b = chunk.b(instruction);
+
+            switch (chunk.op(instruction)) {
+                case CONSTANT -> push((LoxObject) chunk.constantAt(a));
+                case POP -> pop();
+                case GET_LOCAL -> push(frame.environment.getAt(a, (String) chunk.constantAt(b)));
+                case GET_GLOBAL -> push(interpreter.globals.get((Token) chunk.constantAt(a)));
+                case ASSIGN -> {
+                    Token name = (Token) chunk.constantAt(a);
+                    if (b < 0) {
+                        interpreter.globals.assign(name, peek(0));
+                    } else {
+                        frame.environment.assignAt(b, name.lexeme(), peek(0));
+                    }
+                }
+                case DEFINE -> frame.environment.define((String) chunk.constantAt(a), pop());
+                case PUSH_SCOPE -> frame.environment = interpreter.newEnvironment(frame.environment);
+                case POP_SCOPE -> frame.environment = frame.environment.enclosing;
+                case BINARY -> {
+                    LoxObject right = pop();
+                    LoxObject left = pop();
+                    push(interpreter.binary((Token) chunk.constantAt(a), left, right));
+                }
+                case UNARY -> push(Interpreter.unary((Token) chunk.constantAt(a), pop()));
+                case REDUCE -> push(interpreter.reduce((Expression.Reduced) chunk.constantAt(a), pop()));
+                case JUMP -> {
+                    if (a < instruction) {
+                        interpreter.safepoint();
+                    }
+                    frame.ip = a;
+                }
+                case JUMP_IF_FALSE -> {
+                    if (!pop().isTruthy()) {
+                        frame.ip = a;
+                    }
+                }
+                case JUMP_IF_FALSY -> {
+                    if (!peek(0).isTruthy()) {
+                        frame.ip = a;
+                    }
+                }
+                case JUMP_IF_TRUTHY -> {
+                    if (peek(0).isTruthy()) {
+                        frame.ip = a;
+                    }
+                }
+                case CALL -> frame = call(frame, peek(a), null, a, (Token) chunk.constantAt(b));
+                case TAIL_CALL -> {
+                    LoxObject callee = peek(a);
+                    if (callee instanceof LoxFunction) {
+                        frame = replace(frame, a);
+                    }
+                    frame = call(frame, callee, null, a, (Token) chunk.constantAt(b));
+                }
+                case GET_METHOD -> {
+                    Expression.Invoke invoke = (Expression.Invoke) chunk.constantAt(a);
+                    if (!(pop() instanceof LoxInstance instance)) {
+                        throw new LoxRuntimeError(invoke.name(), "Only instances have properties.");
+                    }
+
+                    LoxFunction method = instance.findMethod(invoke.name().lexeme());
+                    if (method != null) {
+                        push(method);
+                        push(instance);
+                    } else {
+                        push(instance.get(invoke.name()));
+                        push(null);
+                    }
+                }
+                case INVOKE, TAIL_INVOKE -> {
+                    Expression.Invoke invoke = (Expression.Invoke) chunk.constantAt(b);
+                    LoxObject receiver = peek(a);
+                    LoxObject callee = peek(a + 1);
+
+                    // Drop the receiver slot so the arguments sit right above the callee, like a plain call
+                    System.arraycopy(stack, sp - a, stack, sp - a - 1, a);
+                    stack[--sp] = null;
+
+                    if (chunk.op(instruction) == TAIL_INVOKE && callee instanceof LoxFunction) {
+                        frame = replace(frame, a);
+                    }
+                    frame = call(frame, callee, (LoxInstance) receiver, a, invoke.paren());
+                }
+                case PRINT -> {
+                    LoxObject callee = peek(1);
+                    if (interpreter.isPrint(callee)) {
+                        interpreter.print(pop());
+                        pop();
+                        push(null);
+                    } else {
+                        frame = call(frame, callee, null, 1, (Token) chunk.constantAt(a));
+                    }
+                }
+                case RETURN -> {
+                    frame = returnFrom(frame, pop());
+                    if (frame == null) {
+                        return;
+                    }
+                }
+                case GET_PROPERTY -> {
+                    Token name = (Token) chunk.constantAt(a);
+                    if (!(pop() instanceof LoxInstance instance)) {
+                        throw new LoxRuntimeError(name, "Only instances have properties.");
+                    }
+                    push(interpreter.property(instance, name));
+                }
+                case CHECK_FIELDS -> {
+                    if (!(peek(0) instanceof LoxInstance)) {
+                        throw new LoxRuntimeError((Token) chunk.constantAt(a), "Only instances have fields.");
+                    }
+                }
+                case GET_FIELD -> {
+                    Token name = (Token) chunk.constantAt(a);
+                    if (!(pop() instanceof LoxInstance instance)) {
+                        throw new LoxRuntimeError(name, "Only instances have fields.");
+                    }
+
+                    LoxInstance.Field field = instance.field(name);
+                    push(field);
+                    push(field.value());
+                }
+                case SET_PROPERTY -> {
+                    LoxObject value = pop();
+                    ((LoxInstance) pop()).set((Token) chunk.constantAt(a), value);
+                    push(value);
+                }
+                case SUPER -> {
+                    Expression.Super expr = (Expression.Super) chunk.constantAt(a);
+                    LoxClass superclass = (LoxClass) frame.environment.getAt(b, "super");
+                    LoxInstance object = (LoxInstance) frame.environment.getAt(b - 1, "this");
+
+                    LoxFunction method = superclass.findMethod(expr.method().lexeme());
+                    if (method == null) {
+                        throw new LoxRuntimeError(expr.method(), "Method does not exist on superclass");
+                    }
+                    push(interpreter.bind(method, object));
+                }
+                case CLOSURE -> {
+                    interpreter.allocate(Allocation.FUNCTION, Heap.FUNCTION);
+                    push(new LoxFunction((Statement.Function) chunk.constantAt(a), frame.environment, false, chunk.resolution));
+                }
+                case CLASS -> declareClass(frame, (Statement.Class) chunk.constantAt(a), pop());
+                case LOAD_SLOT -> {
+                    Compiler.Slot slot = (Compiler.Slot) chunk.constantAt(a);
+                    LoxObject value = frame.environment.getAt(slot.depth(), slot.name());
+                    if (value != Expression.Hoisted.EMPTY) {
+                        push(value);
+                        frame.ip = b;
+                    }
+                }
+                case STORE_SLOT -> {
+                    Compiler.Slot slot = (Compiler.Slot) chunk.constantAt(a);
+                    frame.environment.assignAt(slot.depth(), slot.name(), peek(0));
+                }
+                case COMPOUND -> {
+                    Expression.CompoundAssignment assignment = (Expression.CompoundAssignment) chunk.constantAt(a);
+                    String name = assignment.name().lexeme();
+
+                    LoxObject value = pop();
+                    LoxObject current = pop();
+                    LoxObject updated = interpreter.update(assignment.operator(), current, value);
+
+                    VariableEnvironment scope = b < 0 ? interpreter.globals : frame.environment.ancestor(b);
+                    scope.assignAt(0, name, updated);
+                    push(assignment.postfix() ? current : updated);
+                }
+                case COMPOUND_SET -> {
+                    Expression.CompoundSet set = (Expression.CompoundSet) chunk.constantAt(a);
+                    LoxObject value = pop();
+                    LoxObject current = pop();
+                    LoxObject updated = interpreter.update(set.operator(), current, value);
+
+                    ((LoxInstance.Field) pop()).store(set.name(), updated);
+                    push(set.postfix() ? current : updated);
+                }
+                case INTERPOLATE -> {
+                    LoxObject[] parts = Arrays.copyOfRange(stack, sp - a, sp);
+                    Arrays.fill(stack, sp - a, sp, null);
+                    sp -= a;
+                    push(interpreter.interpolate((Expression.Interpolation) chunk.constantAt(b), parts));
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + chunk.op(instruction));
+            }
+        }
+    }
+
+    /**
+     * Calls {@code callee} with the {@code argCount} values on top of the stack (which sit right above the callee).
+     * Lox functions get a new frame, which is returned; anything else runs to completion and leaves its result where
+     * the callee was.
+     */
+    private Frame call(Frame frame, LoxObject callee, LoxInstance receiver, int argCount, Token paren) {
+        if (!(callee instanceof LoxCallable function)) {
+            throw new LoxRuntimeError(paren, "This type is not callable.");
+        } else if (argCount != function.arity()) {
+            throw new LoxRuntimeError(paren, "Expected " + function.arity() + " arguments but got " + argCount + ".");
+        }
+
+        if (function instanceof LoxClass klass) {
+            InstantiationEvent event = LoxEvents.instantiation();
+
+            interpreter.allocate(Allocation.INSTANCE, Heap.INSTANCE);
+            LoxInstance instance = klass.instantiate();
+            LoxFunction initializer = klass.findMethod("init");
+
+            if (initializer == null) {
+                sp -= argCount + 1;
+                push(instance);
+                if (event != null) {
+                    event.finish(klass.name, klass.line);
+                }
+                return frame;
+            }
+
+            Frame init = enter(initializer, instance, argCount, paren);
+            init.instantiation = event;
+            return init;
+        }
+
+        if (function instanceof LoxFunction lox) {
+            return enter(lox, receiver, argCount, paren);
+        }
+
+        List<LoxObject> args = new ArrayList<>(argCount);
+        for (int i = sp - argCount; i < sp; i++) {
+            args.add(stack[i]);
+        }
+        sp -= argCount + 1;
+        push(interpreter.callBuiltin(function, paren, args));
+        return frame;
+    }
+
+    private Frame enter(LoxFunction function, LoxInstance receiver, int argCount, Token paren) {
+        if (depth == maxDepth) {
+            throw new LoxRuntimeError(paren, "Stack overflow.");
+        }
+        interpreter.countCall();
+        interpreter.safepoint();
+
+        VariableEnvironment closure = function.closure();
+        if (receiver != null) {
+            closure = interpreter.newEnvironment(closure);
+            closure.define("this", receiver);
+        }
+
+        Statement.Function decl = function.declaration();
+        VariableEnvironment environment = interpreter.newEnvironment(closure);
+        for (int i = 0; i < argCount; i++) {
+            environment.define(decl.parameters().get(i).lexeme(), stack[sp - argCount + i]);
+        }
+        sp -= argCount;
+
+        Chunk chunk = function.resolution().chunks().function(decl, function.resolution());
+        Frame frame = new Frame(chunk, function, closure, environment, sp - 1);
+        pushFrame(frame);
+        frame.call = LoxEvents.call();
+        ShadowStack shadow = interpreter.shadowStack();
+        if (shadow != null) {
+            shadow.push(decl.name().lexeme(), decl.name().line());
+        }
+        return frame;
+    }
+
+    /**
+     * Pops {@code frame} and leaves its result in the slot its callee occupied. Returns the caller, or null if
+     * {@code frame} was the entry frame.
+     */
+    private Frame returnFrom(Frame frame, LoxObject value) {
+        if (frame.function != null && frame.function.isInitializer()) {
+            value = frame.closure.getAt(0, "this");
+        }
+
+        frames[--depth] = null;
+        popShadow(frame);
+        if (depth == 0) {
+            return null;
+        }
+
+        Arrays.fill(stack, frame.base, sp, null);
+        sp = frame.base;
+        push(value);
+        return frames[depth - 1];
+    }
+
+    /**
+     * Pops {@code frame} ahead of a tail call, moving the callee and its {@code argCount} arguments down into the
+     * slot the frame's own callee used. Returns the caller, which the tail call then returns to directly.
+     */
+    private Frame replace(Frame frame, int argCount) {
+        int count = argCount + 1;
+        System.arraycopy(stack, sp - count, stack, frame.base, count);
+        Arrays.fill(stack, frame.base + count, sp, null);
+        sp = frame.base + count;
+
+        frames[--depth] = null;
+        popShadow(frame);
+        return frames[depth - 1];
+    }
+
+    /**
+     * Lets the profiler and flight recorder know {@code frame} is done.
+     */
+    private void popShadow(Frame frame) {
+        ShadowStack shadow = interpreter.shadowStack();
+        if (shadow != null && frame.function != null) {
+            shadow.pop();
+        }
+
+        if (frame.call != null) {
+            Token name = frame.function.declaration().name();
+            frame.call.finish(name.lexeme(), name.line());
+        }
+        if (frame.instantiation != null) {
+            LoxClass klass = ((LoxInstance) frame.closure.getAt(0, "this")).klass();
+            frame.instantiation.finish(klass.name, klass.line);
+        }
+    }
+
+    private void pushFrame(Frame frame) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        frames[depth++] = frame;
+    }
+
+    private void declareClass(Frame frame, Statement.Class stmt, LoxObject superclass) {
+        if (stmt.superclass() != null && !(superclass instanceof LoxClass)) {
+            throw new LoxRuntimeError(stmt.superclass().name(), "Superclass must be a class.");
+        }
+        frame.environment.define(stmt.name().lexeme(), null);
+
+        if (stmt.superclass() != null) {
+            frame.environment = frame.environment.enclosing;
+        }
+
+        Map<String, LoxFunction> methods = new HashMap<>();
+        for (Statement.Function method : stmt.methods()) {
+            interpreter.allocate(Allocation.FUNCTION, Heap.FUNCTION);
+            LoxFunction function = new LoxFunction(method, frame.environment, method.name().lexeme().equals("init"), frame.chunk.resolution);
+            methods.put(method.name().lexeme(), function);
+        }
+
+        LoxClass klass = new LoxClass(stmt.name().lexeme(), stmt.name().line(), (LoxClass) superclass, methods);
+        frame.environment.assign(stmt.name(), klass);
+    }
+
+    private void push(LoxObject value) {
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[sp++] = value;
+    }
+
+    private LoxObject pop() {
+        LoxObject value = stack[--sp];
+        stack[sp] = null;
+        return value;
+    }
+
+    private LoxObject peek(int distance) {
+        return stack[sp - 1 - distance];
+    }
+}
@@ -1,31 +1,44 @@
 package dev.rats159.lox.interpreting;
 
+import dev.rats159.lox.constructs.LoxNil;
 import dev.rats159.lox.constructs.LoxObject;
 import dev.rats159.lox.errors.LoxRuntimeError;
 import dev.rats159.lox.lexing.Token;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class VariableEnvironment {
-   private final Map<String, LoxObject> values = new HashMap<>();
+   /**
+    * Stands in for nil, which the globals' concurrent map can't hold.
+    */
+   private static final LoxObject NIL = new LoxNil();
+
+   private final Map<String, LoxObject> values;
    public final VariableEnvironment enclosing;
 
+   /**
+    * The global environment, which every task running in a context reads and writes.
+    */
    public VariableEnvironment() {
+      values = new ConcurrentHashMap<>();
       enclosing = null;
    }
 
    public VariableEnvironment(VariableEnvironment enclosing) {
+      this.values = new HashMap<>();
       this.enclosing = enclosing;
    }
 
    public void define(String name, LoxObject value) {
-      values.put(name, value);
+      values.put(name, wrap(value));
    }
 
    public LoxObject get(Token name) {
-      if (values.containsKey(name.lexeme())) {
-         return values.get(name.lexeme());
+      LoxObject value = values.get(name.lexeme());
+      if (value != null) {
+         return unwrap(value);
       } else if (this.enclosing != null) {
          return enclosing.get(name);
       } else {
@@ -34,8 +47,8 @@ public class VariableEnvironment {
    }
 
    public void assign(Token name, LoxObject value) {
-      if (values.containsKey(name.lexeme())) {
-         values.put(name.lexeme(), value);
+      if (values.replace(name.lexeme(), wrap(value)) != null) {
+         return;
       } else if (enclosing != null) {
          enclosing.assign(name, value);
       } else {
@@ -44,7 +57,11 @@ public class VariableEnvironment {
    }
 
    public LoxObject getAt(int distance, String name) {
-      return ancestor(distance).values.get(name);
+      return unwrap(ancestor(distance).values.get(name));
+   }
+
+   public void assignAt(int distance, String name, LoxObject value) {
+      ancestor(distance).values.put(name, wrap(value));
    }
 
    public VariableEnvironment ancestor(int distance) {
@@ -56,4 +73,12 @@ public class VariableEnvironment {
 
       return environment;
    }
+
+   private static LoxObject wrap(LoxObject value) {
+      return value == null ? NIL : value;
+   }
+
+   private static LoxObject unwrap(LoxObject value) {
+      return value == NIL ? null : value;
+   }
 }
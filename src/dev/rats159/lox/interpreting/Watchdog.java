@@ -0,0 +1,163 @@
+package dev.rats159.lox.interpreting;
+
+import dev.rats159.lox.errors.LoxBudgetExceededError;
+import dev.rats159.lox.errors.LoxTerminatedError;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how long a script may run and lets other threads stop it. Interpreters count down safepoints (loop
+ * back-edges and function entry) locally and only check in here every {@link #SLICE} of them, taking another slice of
+ * fuel and checking the deadline and {@link #terminate} as they do. Every interpreter forked from a context shares
+ * its watchdog, so tasks draw from the same fuel.
+ * <p>
+ * An isolate's context gets a {@link #child} of the watchdog of the context that started it. Its fuel comes out of the
+ * parent's, and it stops as soon as the parent is terminated, runs out of time or runs out of any other budget.
+ */
+public final class Watchdog {
+    /**
+     * How many safepoints an interpreter passes between check-ins.
+     */
+    static final int SLICE = 1024;
+
+    /**
+     * How long a builtin waits at a time before checking in, so waiting scripts can still be stopped.
+     */
+    private static final long WAIT_SLICE_MILLIS = 10;
+
+    private static final long UNLIMITED = -1;
+
+    private final Watchdog parent;
+    private volatile String reason = null;
+    private volatile String exhausted = null;
+    private final AtomicLong fuel = new AtomicLong(UNLIMITED);
+    private volatile boolean hasDeadline = false;
+    private volatile long deadline = 0;
+
+    public Watchdog() {
+        this(null);
+    }
+
+    private Watchdog(Watchdog parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * A watchdog for an isolate started by the script this one watches over, which shares this one's budget.
+     */
+    public Watchdog child() {
+        return new Watchdog(this);
+    }
+
+    /**
+     * Makes every check-in from now on fail with {@code reason}. A terminated script stays terminated.
+     */
+    public void terminate(String reason) {
+        this.reason = reason;
+    }
+
+    public boolean isTerminated() {
+        return reason != null;
+    }
+
+    /**
+     * Sets the budget for the run that is about to start.
+     *
+     * @param fuel      how many safepoints the run may pass, or a negative number for no limit
+     * @param timeLimit how long the run may take, or null for no limit
+     */
+    public void start(long fuel, Duration timeLimit) {
+        this.exhausted = null;
+        this.fuel.set(fuel < 0 ? UNLIMITED : fuel);
+        this.hasDeadline = timeLimit != null;
+        this.deadline = timeLimit == null ? 0 : System.nanoTime() + timeLimit.toNanos();
+    }
+
+    /**
+     * Fails if the script was terminated or is out of budget; otherwise returns how many more safepoints the calling
+     * interpreter may pass before checking in again.
+     */
+    int checkIn() {
+        check();
+        checkDeadline();
+        return take(SLICE);
+    }
+
+    /**
+     * Takes up to {@code wanted} fuel from this watchdog and then from each of its parents, returning how much all of
+     * them could give.
+     */
+    private int take(int wanted) {
+        int taken;
+        while (true) {
+            long remaining = fuel.get();
+            if (remaining == UNLIMITED) {
+                taken = wanted;
+                break;
+            } else if (remaining == 0) {
+                throw exhaust("Out of fuel.");
+            }
+
+            taken = (int) Math.min(wanted, remaining);
+            if (fuel.compareAndSet(remaining, remaining - taken)) {
+                break;
+            }
+        }
+        return parent == null ? taken : parent.take(taken);
+    }
+
+    /**
+     * Fails if the script, or the script that started its isolate, was terminated, or if the latter is out of budget.
+     */
+    void check() {
+        String reason = this.reason;
+        if (reason != null) {
+            throw new LoxTerminatedError(reason);
+        }
+        if (parent != null) {
+            parent.check();
+            String exhausted = parent.exhausted;
+            if (exhausted != null) {
+                throw new LoxBudgetExceededError(exhausted);
+            }
+            parent.checkDeadline();
+        }
+    }
+
+    private void checkDeadline() {
+        if (hasDeadline && System.nanoTime() - deadline > 0) {
+            throw exhaust("Out of time.");
+        }
+    }
+
+    /**
+     * Records that the current run has run out of a budget, so the isolates it started stop too.
+     */
+    LoxBudgetExceededError exhaust(String message) {
+        exhausted = message;
+        return new LoxBudgetExceededError(message);
+    }
+
+    /**
+     * Something a builtin waits for, a few milliseconds at a time.
+     */
+    @FunctionalInterface
+    public interface Wait {
+        /**
+         * Waits up to {@code millis} milliseconds, returning whether whatever was being waited for happened.
+         */
+        boolean attempt(long millis) throws InterruptedException;
+    }
+
+    /**
+     * Keeps making {@code wait}'s attempts until one succeeds, failing in between if the script was terminated or has
+     * run out of time. Waiting doesn't use up any fuel.
+     */
+    public void await(Wait wait) throws InterruptedException {
+        while (!wait.attempt(WAIT_SLICE_MILLIS)) {
+            check();
+            checkDeadline();
+        }
+    }
+}
@@ -7,12 +7,15 @@ public enum TokenType {
 
    // One or two character tokens.
    BANG, BANG_EQUAL,
+   PLUS_EQUAL, PLUS_PLUS,
+   MINUS_EQUAL, MINUS_MINUS,
    EQUAL, EQUAL_EQUAL,
    GREATER, GREATER_EQUAL,
    LESS, LESS_EQUAL,
 
    // Literals.
    IDENTIFIER, STRING, NUMBER,
+   INTERPOLATION, // The text of a string up to a `${`; the string carries on after the matching `}`
 
    // Keywords.
    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
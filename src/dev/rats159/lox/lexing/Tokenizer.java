@@ -1,44 +1,59 @@
 package dev.rats159.lox.lexing;
 
-import dev.rats159.lox.Lox;
 import dev.rats159.lox.constructs.LoxNumber;
 import dev.rats159.lox.constructs.LoxObject;
-import dev.rats159.lox.constructs.LoxString;
+import dev.rats159.lox.constructs.StringTable;
+import dev.rats159.lox.errors.Diagnostics;
 
 import java.util.*;
 
 import static dev.rats159.lox.lexing.TokenType.*;
 
 public class Tokenizer {
-   private static final Map<String, TokenType> keywords = new HashMap<>();
-
-   static {
-      keywords.put("and", AND);
-      keywords.put("class", CLASS);
-      keywords.put("else", ELSE);
-      keywords.put("false", FALSE);
-      keywords.put("for", FOR);
-      keywords.put("fun", FUN);
-      keywords.put("if", IF);
-      keywords.put("nil", NIL);
-      keywords.put("or", OR);
-      keywords.put("return", RETURN);
-      keywords.put("super", SUPER);
-      keywords.put("this", THIS);
-      keywords.put("true", TRUE);
-      keywords.put("var", VAR);
-      keywords.put("while", WHILE);
-   }
+   private static final Map<String, TokenType> keywords = Map.ofEntries(
+      Map.entry("and", AND),
+      Map.entry("class", CLASS),
+      Map.entry("else", ELSE),
+      Map.entry("false", FALSE),
+      Map.entry("for", FOR),
+      Map.entry("fun", FUN),
+      Map.entry("if", IF),
+      Map.entry("nil", NIL),
+      Map.entry("or", OR),
+      Map.entry("return", RETURN),
+      Map.entry("super", SUPER),
+      Map.entry("this", THIS),
+      Map.entry("true", TRUE),
+      Map.entry("var", VAR),
+      Map.entry("while", WHILE)
+   );
 
    private final String source;
+   private final Diagnostics diagnostics;
+   private final StringTable strings;
    private final List<Token> tokens = new ArrayList<>();
 
+   /**
+    * One entry for every `${` being scanned, innermost first, counting the `{`s opened since. A `}` with none left
+    * open ends the interpolation and goes back to scanning the string.
+    */
+   private final Deque<Integer> interpolations = new ArrayDeque<>();
+
    private int start = 0;
    private int current = 0;
    private int line = 1;
 
-   public Tokenizer(String source) {
+   public Tokenizer(String source, Diagnostics diagnostics) {
+      this(source, diagnostics, new StringTable());
+   }
+
+   /**
+    * @param strings where string literals are interned, so equal literals are the same object
+    */
+   public Tokenizer(String source, Diagnostics diagnostics, StringTable strings) {
       this.source = source;
+      this.diagnostics = diagnostics;
+      this.strings = strings;
    }
 
    public List<Token> scanTokens() {
@@ -47,6 +62,10 @@ public class Tokenizer {
          scanToken();
       }
 
+      if (!interpolations.isEmpty()) {
+         diagnostics.error(line, "Unterminated string interpolation.");
+      }
+
       this.tokens.add(new Token(EOF, "", null, line));
       return this.tokens;
    }
@@ -60,12 +79,30 @@ public class Tokenizer {
       switch (c) {
          case '(' -> addToken(LEFT_PAREN);
          case ')' -> addToken(RIGHT_PAREN);
-         case '{' -> addToken(LEFT_BRACE);
-         case '}' -> addToken(RIGHT_BRACE);
+         case '{' -> {
+            if (!interpolations.isEmpty()) {
+               interpolations.push(interpolations.pop() + 1);
+            }
+            addToken(LEFT_BRACE);
+         }
+         case '}' -> {
+            if (!interpolations.isEmpty() && interpolations.peek() == 0) {
+               interpolations.pop();
+               if (tokens.getLast().type() == INTERPOLATION) {
+                  diagnostics.error(line, "Expect expression inside '${}'.");
+               }
+               this.string(current);
+            } else {
+               if (!interpolations.isEmpty()) {
+                  interpolations.push(interpolations.pop() - 1);
+               }
+               addToken(RIGHT_BRACE);
+            }
+         }
          case ',' -> addToken(COMMA);
          case '.' -> addToken(DOT);
-         case '-' -> addToken(MINUS);
-         case '+' -> addToken(PLUS);
+         case '-' -> addToken(match('-') ? MINUS_MINUS : match('=') ? MINUS_EQUAL : MINUS);
+         case '+' -> addToken(match('+') ? PLUS_PLUS : match('=') ? PLUS_EQUAL : PLUS);
          case ';' -> addToken(SEMICOLON);
          case '*' -> addToken(STAR);
          case '%' -> addToken(MOD);
@@ -86,12 +123,12 @@ public class Tokenizer {
          case ' ', '\r', '\t' -> {
          }
          case '\n' -> line++;
-         case '"' -> this.string();
+         case '"' -> this.string(current);
          default -> {
             if (this.isAlpha(c)) {
                this.identifier();
             } else {
-               Lox.error(this.line, "Unexpected character `%c`".formatted(c));
+               diagnostics.error(this.line, "Unexpected character `%c`".formatted(c));
             }
          }
       }
@@ -112,15 +149,27 @@ public class Tokenizer {
       }
 
       if (this.isDone()) {
-         Lox.error(line, "Unterminated comment.");
+         diagnostics.error(line, "Unterminated comment.");
          return;
       }
 
       this.advance();
    }
 
-   private void string() {
+   /**
+    * Scans the text of a string from {@code from} to the closing quote, or to the next `${`, which ends the text in an
+    * INTERPOLATION token and leaves the expression after it to be scanned as usual.
+    */
+   private void string(int from) {
       while (peek() != '"' && !this.isDone()) {
+         if (peek() == '$' && peekNext() == '{') {
+            String value = source.substring(from, current);
+            this.advance();
+            this.advance();
+            this.addToken(INTERPOLATION, strings.intern(value));
+            interpolations.push(0);
+            return;
+         }
          if (peek() == '\n') {
             this.line++;
          }
@@ -128,15 +177,15 @@ public class Tokenizer {
       }
 
       if (this.isDone()) {
-         Lox.error(line, "Unterminated string.");
+         diagnostics.error(line, "Unterminated string.");
          return;
       }
 
       this.advance();
 
-      // Trim the surrounding quotes.
-      String value = source.substring(start + 1, current - 1);
-      this.addToken(STRING, new LoxString(value));
+      // Trim the closing quote.
+      String value = source.substring(from, current - 1);
+      this.addToken(STRING, strings.intern(value));
    }
 
    private boolean isDigit(char c) {
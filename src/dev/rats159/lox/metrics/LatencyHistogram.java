@@ -0,0 +1,64 @@
+package dev.rats159.lox.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in power-of-two nanosecond buckets, which is coarse but cheap and needs no locking. Percentiles are
+ * reported as the upper edge of the bucket they fall in, so they can be up to twice the real value.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = 48;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 1);
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos)));
+        count.increment();
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        return new LatencySnapshot(
+          count,
+          count == 0 ? 0 : millis(total.sum()) / count,
+          millis(max.get()),
+          percentile(counts, count, 0.50),
+          percentile(counts, count, 0.90),
+          percentile(counts, count, 0.99)
+        );
+    }
+
+    private static double percentile(long[] counts, long count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return millis((1L << (i + 1)) - 1);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,49 @@
+package dev.rats159.lox.metrics;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * A summary of a {@link LatencyHistogram} at one moment, in milliseconds. Shows up in JMX as composite data.
+ */
+public final class LatencySnapshot {
+    private final long count;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+
+    @ConstructorParameters({"count", "meanMillis", "maxMillis", "p50Millis", "p90Millis", "p99Millis"})
+    public LatencySnapshot(long count, double meanMillis, double maxMillis, double p50Millis, double p90Millis, double p99Millis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.maxMillis = maxMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+}
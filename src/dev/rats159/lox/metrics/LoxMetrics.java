@@ -0,0 +1,112 @@
+package dev.rats159.lox.metrics;
+
+import dev.rats159.lox.interpreting.Allocation;
+import dev.rats159.lox.interpreting.Counters;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one context: the interpreters' {@link Counters} plus what the context itself records about
+ * preparing and running scripts. Nothing is visible in JMX until {@link #register} is called.
+ */
+public final class LoxMetrics implements LoxMetricsMXBean {
+    private final Counters counters;
+    private final LongAdder runtimeErrors = new LongAdder();
+    private final Map<String, LatencyHistogram> compilePhases = new ConcurrentHashMap<>();
+    private final LatencyHistogram executions = new LatencyHistogram();
+    private ObjectName name = null;
+
+    public LoxMetrics(Counters counters) {
+        this.counters = counters;
+    }
+
+    public void recordCompilePhase(String phase, long nanos) {
+        compilePhases.computeIfAbsent(phase, ignored -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void recordExecution(long nanos) {
+        executions.record(nanos);
+    }
+
+    public void recordRuntimeError() {
+        runtimeErrors.increment();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under {@code name}, replacing whatever was there.
+     */
+    public synchronized void register(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register " + name + ".", e);
+        }
+        this.name = name;
+    }
+
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException ignored) {
+            // Already gone
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't unregister " + name + ".", e);
+        }
+        name = null;
+    }
+
+    @Override
+    public long getCalls() {
+        return counters.calls();
+    }
+
+    @Override
+    public long getEnvironmentAllocations() {
+        return counters.allocations(Allocation.ENVIRONMENT);
+    }
+
+    @Override
+    public long getInstanceCreations() {
+        return counters.allocations(Allocation.INSTANCE);
+    }
+
+    @Override
+    public long getPropertyCacheHits() {
+        return counters.cacheHits();
+    }
+
+    @Override
+    public long getPropertyCacheMisses() {
+        return counters.cacheMisses();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getCompilePhases() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        compilePhases.forEach((phase, histogram) -> snapshots.put(phase, histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public LatencySnapshot getExecutions() {
+        return executions.snapshot();
+    }
+}
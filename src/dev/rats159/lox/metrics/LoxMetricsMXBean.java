@@ -0,0 +1,31 @@
+package dev.rats159.lox.metrics;
+
+import java.util.Map;
+
+/**
+ * What a {@link dev.rats159.lox.LoxContext} shows in JMX. Counts cover everything the context has run since it was
+ * made, including its tasks.
+ */
+public interface LoxMetricsMXBean {
+    long getCalls();
+
+    long getEnvironmentAllocations();
+
+    long getInstanceCreations();
+
+    long getPropertyCacheHits();
+
+    long getPropertyCacheMisses();
+
+    long getRuntimeErrors();
+
+    /**
+     * How long each phase of preparing a script took, by phase name.
+     */
+    Map<String, LatencySnapshot> getCompilePhases();
+
+    /**
+     * How long running prepared scripts took, not counting preparing them.
+     */
+    LatencySnapshot getExecutions();
+}
@@ -0,0 +1,197 @@
+package dev.rats159.lox.optimizing;
+
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for passes that turn one syntax tree into another. Every node is rebuilt from its rewritten children, so
+ * a subclass only has to override the nodes it actually wants to change. Leaves are returned as-is, which keeps their
+ * identity (and their tokens) intact for the resolver.
+ */
+public abstract class AstRewriter implements Expression.Visitor<Expression>, Statement.Visitor<Statement> {
+
+   public List<Statement> rewrite(List<Statement> statements) {
+      List<Statement> rewritten = new ArrayList<>(statements.size());
+      for (Statement statement : statements) {
+         rewritten.add(rewrite(statement));
+      }
+      return rewritten;
+   }
+
+   protected Statement rewrite(Statement statement) {
+      return statement == null ? null : statement.accept(this);
+   }
+
+   protected Expression rewrite(Expression expression) {
+      return expression == null ? null : expression.accept(this);
+   }
+
+   @Override
+   public Expression visitBinaryExpression(Expression.Binary expression) {
+      return new Expression.Binary(rewrite(expression.left()), expression.operator(), rewrite(expression.right()));
+   }
+
+   @Override
+   public Expression visitGroupingExpression(Expression.Grouping expression) {
+      return new Expression.Grouping(rewrite(expression.inner()));
+   }
+
+   @Override
+   public Expression visitLiteralExpression(Expression.Literal literal) {
+      return literal;
+   }
+
+   @Override
+   public Expression visitUnaryExpression(Expression.Unary unary) {
+      return new Expression.Unary(unary.operator(), rewrite(unary.right()));
+   }
+
+   @Override
+   public Expression visitVariableExpression(Expression.Variable variable) {
+      return variable;
+   }
+
+   @Override
+   public Expression visitAssignmentExpression(Expression.Assignment assignment) {
+      return new Expression.Assignment(assignment.name(), rewrite(assignment.value()));
+   }
+
+   @Override
+   public Expression visitLogicalExpression(Expression.Logical logicalExpression) {
+      return new Expression.Logical(rewrite(logicalExpression.left()), logicalExpression.operator(), rewrite(logicalExpression.right()));
+   }
+
+   @Override
+   public Expression visitCallExpression(Expression.Call call) {
+      List<Expression> args = new ArrayList<>(call.args().size());
+      for (Expression arg : call.args()) {
+         args.add(rewrite(arg));
+      }
+      return new Expression.Call(rewrite(call.callee()), call.paren(), args);
+   }
+
+   @Override
+   public Expression visitGetExpression(Expression.Get get) {
+      return new Expression.Get(rewrite(get.object()), get.name());
+   }
+
+   @Override
+   public Expression visitSetExpression(Expression.Set set) {
+      return new Expression.Set(rewrite(set.object()), set.name(), rewrite(set.value()));
+   }
+
+   @Override
+   public Expression visitThisExpression(Expression.This thisExpression) {
+      return thisExpression;
+   }
+
+   @Override
+   public Expression visitSuperExpression(Expression.Super superExpression) {
+      return superExpression;
+   }
+
+   @Override
+   public Expression visitHoistedExpression(Expression.Hoisted hoisted) {
+      return new Expression.Hoisted(hoisted.slot(), rewrite(hoisted.inner()));
+   }
+
+   @Override
+   public Expression visitReducedExpression(Expression.Reduced reduced) {
+      return new Expression.Reduced(rewrite(reduced.operand()), reduced.operator(), reduced.constant(), reduced.reduction());
+   }
+
+   @Override
+   public Expression visitComparisonExpression(Expression.Comparison comparison) {
+      return new Expression.Comparison(comparison.left(), comparison.operator(), rewrite(comparison.right()));
+   }
+
+   @Override
+   public Expression visitCompoundAssignmentExpression(Expression.CompoundAssignment assignment) {
+      return new Expression.CompoundAssignment(assignment.name(), assignment.operator(), rewrite(assignment.value()), assignment.postfix());
+   }
+
+   @Override
+   public Expression visitCompoundSetExpression(Expression.CompoundSet set) {
+      return new Expression.CompoundSet(rewrite(set.object()), set.name(), set.operator(), rewrite(set.value()), set.postfix());
+   }
+
+   @Override
+   public Expression visitInterpolationExpression(Expression.Interpolation interpolation) {
+      List<Expression> parts = new ArrayList<>(interpolation.parts().size());
+      for (Expression part : interpolation.parts()) {
+         parts.add(rewrite(part));
+      }
+      return new Expression.Interpolation(interpolation.start(), parts);
+   }
+
+   @Override
+   public Expression visitInvokeExpression(Expression.Invoke invoke) {
+      List<Expression> args = new ArrayList<>(invoke.args().size());
+      for (Expression arg : invoke.args()) {
+         args.add(rewrite(arg));
+      }
+      return new Expression.Invoke(rewrite(invoke.object()), invoke.name(), invoke.paren(), args);
+   }
+
+   @Override
+   public Statement visitExpressionStatement(Statement.ExpressionStatement statement) {
+      return new Statement.ExpressionStatement(rewrite(statement.expression()));
+   }
+
+   @Override
+   public Statement visitVariableStatement(Statement.VariableStatement statement) {
+      return new Statement.VariableStatement(statement.name(), rewrite(statement.initializer()));
+   }
+
+   @Override
+   public Statement visitBlockStatement(Statement.Block block) {
+      return new Statement.Block(rewrite(block.statements()));
+   }
+
+   @Override
+   public Statement visitIfStatement(Statement.If ifStatement) {
+      return new Statement.If(rewrite(ifStatement.condition()), rewrite(ifStatement.thenBranch()), rewrite(ifStatement.elseBranch()));
+   }
+
+   @Override
+   public Statement visitWhileStatement(Statement.While whileStatement) {
+      return new Statement.While(rewrite(whileStatement.condition()), rewrite(whileStatement.body()));
+   }
+
+   @Override
+   public Statement visitForStatement(Statement.For forStatement) {
+      return new Statement.For(
+        rewrite(forStatement.initializer()),
+        rewrite(forStatement.condition()),
+        rewrite(forStatement.increment()),
+        rewrite(forStatement.body())
+      );
+   }
+
+   @Override
+   public Statement visitFunction(Statement.Function function) {
+      return new Statement.Function(function.name(), function.parameters(), rewrite(function.body()));
+   }
+
+   @Override
+   public Statement visitReturnStatement(Statement.Return returnStatement) {
+      return new Statement.Return(returnStatement.keyword(), rewrite(returnStatement.value()));
+   }
+
+   @Override
+   public Statement visitClassStatement(Statement.Class classStatement) {
+      List<Statement.Function> methods = new ArrayList<>(classStatement.methods().size());
+      for (Statement.Function method : classStatement.methods()) {
+         methods.add((Statement.Function) rewrite(method));
+      }
+      return new Statement.Class(classStatement.name(), classStatement.superclass(), methods);
+   }
+
+   @Override
+   public Statement visitPrintStatement(Statement.Print printStatement) {
+      return new Statement.Print(printStatement.callee(), printStatement.paren(), rewrite(printStatement.value()));
+   }
+}
@@ -0,0 +1,229 @@
+package dev.rats159.lox.optimizing;
+
+import dev.rats159.lox.constructs.LoxNumber;
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.lexing.TokenType;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes loops cheaper to run.
+ * <ul>
+ *    <li>Expressions inside a loop that only read local variables the loop never changes, and that no closure can
+ *    change behind its back, are computed once per loop and then reused. The first evaluation still happens where
+ *    the expression is written, so errors and evaluation order don't move.</li>
+ *    <li>Arithmetic with a constant right-hand side (`x * 2`, `x % 1`, ...) is swapped for a cheaper form when the
+ *    left-hand side turns out to be a number, and arithmetic on two number literals is folded away.</li>
+ * </ul>
+ * Has to run before the resolver, since it introduces new variables.
+ */
+public class LoopOptimizer extends AstRewriter {
+   private final ScopeAnalysis analysis = new ScopeAnalysis();
+   private int loopDepth = 0;
+   private int slots = 0;
+
+   public List<Statement> optimize(List<Statement> statements) {
+      analysis.analyze(statements);
+      return rewrite(statements);
+   }
+
+   @Override
+   public Statement visitWhileStatement(Statement.While whileStatement) {
+      ScopeAnalysis.LoopFacts facts = analysis.facts(whileStatement);
+
+      loopDepth++;
+      Expression condition = rewrite(whileStatement.condition());
+      Statement body = rewrite(whileStatement.body());
+      loopDepth--;
+
+      Hoister hoister = new Hoister(facts);
+      Statement loop = new Statement.While(hoister.rewrite(condition), hoister.rewrite(body));
+
+      return hoister.wrap(loop);
+   }
+
+   @Override
+   public Statement visitForStatement(Statement.For forStatement) {
+      ScopeAnalysis.LoopFacts facts = analysis.facts(forStatement);
+      Statement initializer = rewrite(forStatement.initializer());
+
+      loopDepth++;
+      Expression condition = rewrite(forStatement.condition());
+      Expression increment = rewrite(forStatement.increment());
+      Statement body = rewrite(forStatement.body());
+      loopDepth--;
+
+      Hoister hoister = new Hoister(facts);
+      Statement loop = new Statement.For(
+        initializer,
+        hoister.rewrite(condition),
+        hoister.rewrite(increment),
+        hoister.rewrite(body)
+      );
+
+      return hoister.wrap(loop);
+   }
+
+   @Override
+   public Expression visitBinaryExpression(Expression.Binary expression) {
+      Expression.Binary binary = (Expression.Binary) super.visitBinaryExpression(expression);
+      return loopDepth > 0 ? reduce(binary) : binary;
+   }
+
+   @Override
+   public Expression visitUnaryExpression(Expression.Unary unary) {
+      Expression.Unary rewritten = (Expression.Unary) super.visitUnaryExpression(unary);
+
+      if (loopDepth > 0
+        && rewritten.operator().type() == TokenType.MINUS
+        && rewritten.right() instanceof Expression.Literal literal
+        && literal.value() instanceof LoxNumber num) {
+         return new Expression.Literal(new LoxNumber(-num.value));
+      }
+
+      return rewritten;
+   }
+
+   private Expression reduce(Expression.Binary binary) {
+      if (!(binary.right() instanceof Expression.Literal constant && constant.value() instanceof LoxNumber right)) {
+         return binary;
+      }
+
+      if (binary.left() instanceof Expression.Literal literal && literal.value() instanceof LoxNumber left) {
+         return fold(binary, left.value, right.value);
+      }
+
+      Expression.Reduced.Reduction reduction = switch (binary.operator().type()) {
+         case STAR -> right.value == 1 ? Expression.Reduced.Reduction.IDENTITY
+           : right.value == 2 ? Expression.Reduced.Reduction.DOUBLE : null;
+         case SLASH -> right.value == 1 ? Expression.Reduced.Reduction.IDENTITY
+           : right.value == 2 ? Expression.Reduced.Reduction.HALVE : null;
+         // x - -0 is not x when x is -0
+         case MINUS -> Double.compare(right.value, 0) == 0 ? Expression.Reduced.Reduction.IDENTITY : null;
+         case MOD -> right.value == 1 ? Expression.Reduced.Reduction.FRACTION : null;
+         default -> null;
+      };
+
+      if (reduction == null) {
+         return binary;
+      }
+
+      return new Expression.Reduced(binary.left(), binary.operator(), constant, reduction);
+   }
+
+   private Expression fold(Expression.Binary binary, double left, double right) {
+      return switch (binary.operator().type()) {
+         case PLUS -> new Expression.Literal(new LoxNumber(left + right));
+         case MINUS -> new Expression.Literal(new LoxNumber(left - right));
+         case STAR -> new Expression.Literal(new LoxNumber(left * right));
+         case SLASH -> new Expression.Literal(new LoxNumber(left / right));
+         case MOD -> new Expression.Literal(new LoxNumber(left % right));
+         default -> binary;
+      };
+   }
+
+   /**
+    * Replaces the largest loop-invariant expressions of one loop with {@link Expression.Hoisted} nodes. Doesn't look
+    * inside functions and classes declared in the loop, since those run on their own schedule.
+    */
+   private class Hoister extends AstRewriter {
+      private final ScopeAnalysis.LoopFacts facts;
+      private final List<Token> hoisted = new ArrayList<>();
+
+      private Hoister(ScopeAnalysis.LoopFacts facts) {
+         this.facts = facts;
+      }
+
+      @Override
+      protected Expression rewrite(Expression expression) {
+         if (expression instanceof Expression.Hoisted inner && isInvariant(inner.inner())) {
+            return hoist(inner.inner());
+         }
+
+         if (expression != null && isWorthHoisting(expression) && isInvariant(expression)) {
+            return hoist(expression);
+         }
+
+         return super.rewrite(expression);
+      }
+
+      @Override
+      public Statement visitFunction(Statement.Function function) {
+         return function;
+      }
+
+      @Override
+      public Statement visitClassStatement(Statement.Class classStatement) {
+         return classStatement;
+      }
+
+      private Expression hoist(Expression expression) {
+         Token slot = new Token(TokenType.IDENTIFIER, "$loop" + slots++, null, line(expression));
+         hoisted.add(slot);
+         return new Expression.Hoisted(slot, expression);
+      }
+
+      /**
+       * Declares the hidden slots right outside the loop, so they start out empty every time the loop is entered.
+       */
+      private Statement wrap(Statement loop) {
+         if (hoisted.isEmpty()) {
+            return loop;
+         }
+
+         List<Statement> block = new ArrayList<>();
+         for (Token slot : hoisted) {
+            block.add(new Statement.VariableStatement(slot, new Expression.Literal(Expression.Hoisted.EMPTY)));
+         }
+         block.add(loop);
+
+         return new Statement.Block(block);
+      }
+
+      private boolean isInvariant(Expression expression) {
+         return switch (expression) {
+            case Expression.Literal literal -> true;
+            case Expression.This self -> true;
+            case Expression.Variable variable -> facts.isInvariant(analysis.declaration(variable.name()));
+            case Expression.Grouping grouping -> isInvariant(grouping.inner());
+            case Expression.Unary unary -> isInvariant(unary.right());
+            case Expression.Binary binary -> isInvariant(binary.left()) && isInvariant(binary.right());
+            case Expression.Logical logical -> isInvariant(logical.left()) && isInvariant(logical.right());
+            case Expression.Reduced reduced -> isInvariant(reduced.operand());
+            case Expression.Hoisted inner -> isInvariant(inner.inner());
+            case Expression.Interpolation interpolation -> interpolation.parts().stream().allMatch(this::isInvariant);
+            default -> false;
+         };
+      }
+
+      /**
+       * Reading a variable or a literal is already as cheap as reading the slot would be.
+       */
+      private boolean isWorthHoisting(Expression expression) {
+         return switch (expression) {
+            case Expression.Binary binary -> true;
+            case Expression.Unary unary -> true;
+            case Expression.Logical logical -> true;
+            case Expression.Reduced reduced -> true;
+            case Expression.Interpolation interpolation -> true;
+            case Expression.Grouping grouping -> isWorthHoisting(grouping.inner());
+            default -> false;
+         };
+      }
+
+      private int line(Expression expression) {
+         return switch (expression) {
+            case Expression.Binary binary -> binary.operator().line();
+            case Expression.Unary unary -> unary.operator().line();
+            case Expression.Logical logical -> logical.operator().line();
+            case Expression.Reduced reduced -> reduced.operator().line();
+            case Expression.Get get -> get.name().line();
+            case Expression.Grouping grouping -> line(grouping.inner());
+            default -> 0;
+         };
+      }
+   }
+}
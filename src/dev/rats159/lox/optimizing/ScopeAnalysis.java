@@ -0,0 +1,345 @@
+package dev.rats159.lox.optimizing;
+
+import dev.rats159.lox.lexing.Token;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+import java.util.*;
+
+/**
+ * Walks the program with the same scoping rules as the resolver and works out which declaration every variable
+ * reference points at, whether that declaration is ever captured by a closure, and what each loop writes to.
+ */
+final class ScopeAnalysis implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+   static final class Declaration {
+      private final int function;
+      private boolean captured;
+
+      private Declaration(int function, boolean captured) {
+         this.function = function;
+         this.captured = captured;
+      }
+   }
+
+   static final class LoopFacts {
+      private final Set<Declaration> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+      private final Set<Declaration> declared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+      /**
+       * A variable keeps its value for the whole loop if the loop never writes it and no closure could write it
+       * either. A spawned task can run a closure while the loop is going, whether or not the loop calls anything,
+       * so captured variables (globals included) never count.
+       */
+      boolean isInvariant(Declaration declaration) {
+         if (declaration == null || assigned.contains(declaration) || declared.contains(declaration)) {
+            return false;
+         }
+
+         return !declaration.captured;
+      }
+   }
+
+   private final Map<Token, Declaration> references = new IdentityHashMap<>();
+   private final Map<Statement, LoopFacts> loops = new IdentityHashMap<>();
+   private final Map<String, Declaration> globals = new HashMap<>();
+   private final Stack<Map<String, Declaration>> scopes = new Stack<>();
+   private final List<LoopFacts> openLoops = new ArrayList<>();
+   private int function = 0;
+
+   void analyze(List<Statement> statements) {
+      for (Statement statement : statements) {
+         analyze(statement);
+      }
+   }
+
+   Declaration declaration(Token name) {
+      return references.get(name);
+   }
+
+   LoopFacts facts(Statement loop) {
+      return loops.get(loop);
+   }
+
+   private void analyze(Statement statement) {
+      if (statement != null) {
+         statement.accept(this);
+      }
+   }
+
+   private void analyze(Expression expression) {
+      if (expression != null) {
+         expression.accept(this);
+      }
+   }
+
+   private void declare(Token name) {
+      Declaration declaration;
+      if (scopes.isEmpty()) {
+         declaration = global(name);
+      } else {
+         declaration = new Declaration(function, false);
+         scopes.peek().put(name.lexeme(), declaration);
+      }
+
+      references.put(name, declaration);
+      for (LoopFacts loop : openLoops) {
+         loop.declared.add(declaration);
+      }
+   }
+
+   private Declaration lookUp(Token name) {
+      Declaration declaration = null;
+      for (int i = scopes.size() - 1; i >= 0 && declaration == null; i--) {
+         declaration = scopes.get(i).get(name.lexeme());
+      }
+
+      if (declaration == null) {
+         declaration = global(name);
+      } else if (declaration.function < function) {
+         declaration.captured = true;
+      }
+
+      references.put(name, declaration);
+      return declaration;
+   }
+
+   /**
+    * Globals can be reassigned by any function, or any task, so they always count as captured.
+    */
+   private Declaration global(Token name) {
+      return globals.computeIfAbsent(name.lexeme(), ignored -> new Declaration(0, true));
+   }
+
+   private void analyzeFunction(Statement.Function declaration) {
+      function++;
+      scopes.push(new HashMap<>());
+      for (Token param : declaration.parameters()) {
+         declare(param);
+      }
+      analyze(declaration.body());
+      scopes.pop();
+      function--;
+   }
+
+   @Override
+   public Void visitBinaryExpression(Expression.Binary expression) {
+      analyze(expression.left());
+      analyze(expression.right());
+      return null;
+   }
+
+   @Override
+   public Void visitGroupingExpression(Expression.Grouping expression) {
+      analyze(expression.inner());
+      return null;
+   }
+
+   @Override
+   public Void visitLiteralExpression(Expression.Literal literal) {
+      return null;
+   }
+
+   @Override
+   public Void visitUnaryExpression(Expression.Unary unary) {
+      analyze(unary.right());
+      return null;
+   }
+
+   @Override
+   public Void visitVariableExpression(Expression.Variable variable) {
+      lookUp(variable.name());
+      return null;
+   }
+
+   @Override
+   public Void visitAssignmentExpression(Expression.Assignment assignment) {
+      analyze(assignment.value());
+      Declaration declaration = lookUp(assignment.name());
+      for (LoopFacts loop : openLoops) {
+         loop.assigned.add(declaration);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitLogicalExpression(Expression.Logical logicalExpression) {
+      analyze(logicalExpression.left());
+      analyze(logicalExpression.right());
+      return null;
+   }
+
+   @Override
+   public Void visitCallExpression(Expression.Call call) {
+      analyze(call.callee());
+      for (Expression arg : call.args()) {
+         analyze(arg);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitGetExpression(Expression.Get get) {
+      analyze(get.object());
+      return null;
+   }
+
+   @Override
+   public Void visitSetExpression(Expression.Set set) {
+      analyze(set.value());
+      analyze(set.object());
+      return null;
+   }
+
+   @Override
+   public Void visitThisExpression(Expression.This thisExpression) {
+      return null;
+   }
+
+   @Override
+   public Void visitSuperExpression(Expression.Super superExpression) {
+      return null;
+   }
+
+   @Override
+   public Void visitHoistedExpression(Expression.Hoisted hoisted) {
+      analyze(hoisted.inner());
+      return null;
+   }
+
+   @Override
+   public Void visitReducedExpression(Expression.Reduced reduced) {
+      analyze(reduced.operand());
+      return null;
+   }
+
+   @Override
+   public Void visitComparisonExpression(Expression.Comparison comparison) {
+      analyze(comparison.left());
+      analyze(comparison.right());
+      return null;
+   }
+
+   @Override
+   public Void visitCompoundAssignmentExpression(Expression.CompoundAssignment assignment) {
+      analyze(assignment.value());
+      Declaration declaration = lookUp(assignment.name());
+      for (LoopFacts loop : openLoops) {
+         loop.assigned.add(declaration);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitInvokeExpression(Expression.Invoke invoke) {
+      analyze(invoke.object());
+      for (Expression arg : invoke.args()) {
+         analyze(arg);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitCompoundSetExpression(Expression.CompoundSet set) {
+      analyze(set.value());
+      analyze(set.object());
+      return null;
+   }
+
+   @Override
+   public Void visitInterpolationExpression(Expression.Interpolation interpolation) {
+      for (Expression part : interpolation.parts()) {
+         analyze(part);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+      analyze(statement.expression());
+      return null;
+   }
+
+   @Override
+   public Void visitVariableStatement(Statement.VariableStatement statement) {
+      analyze(statement.initializer());
+      declare(statement.name());
+      return null;
+   }
+
+   @Override
+   public Void visitBlockStatement(Statement.Block block) {
+      scopes.push(new HashMap<>());
+      analyze(block.statements());
+      scopes.pop();
+      return null;
+   }
+
+   @Override
+   public Void visitIfStatement(Statement.If ifStatement) {
+      analyze(ifStatement.condition());
+      analyze(ifStatement.thenBranch());
+      analyze(ifStatement.elseBranch());
+      return null;
+   }
+
+   @Override
+   public Void visitWhileStatement(Statement.While whileStatement) {
+      LoopFacts facts = new LoopFacts();
+      loops.put(whileStatement, facts);
+
+      openLoops.add(facts);
+      analyze(whileStatement.condition());
+      analyze(whileStatement.body());
+      openLoops.removeLast();
+      return null;
+   }
+
+   @Override
+   public Void visitForStatement(Statement.For forStatement) {
+      LoopFacts facts = new LoopFacts();
+      loops.put(forStatement, facts);
+
+      scopes.push(new HashMap<>());
+      analyze(forStatement.initializer());
+
+      openLoops.add(facts);
+      analyze(forStatement.condition());
+      analyze(forStatement.body());
+      analyze(forStatement.increment());
+      openLoops.removeLast();
+
+      scopes.pop();
+      return null;
+   }
+
+   @Override
+   public Void visitFunction(Statement.Function function) {
+      declare(function.name());
+      analyzeFunction(function);
+      return null;
+   }
+
+   @Override
+   public Void visitReturnStatement(Statement.Return returnStatement) {
+      analyze(returnStatement.value());
+      return null;
+   }
+
+   @Override
+   public Void visitClassStatement(Statement.Class classStatement) {
+      declare(classStatement.name());
+      analyze(classStatement.superclass());
+
+      for (Statement.Function method : classStatement.methods()) {
+         analyzeFunction(method);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitPrintStatement(Statement.Print printStatement) {
+      analyze(printStatement.callee());
+      analyze(printStatement.value());
+      return null;
+   }
+}
@@ -0,0 +1,76 @@
+package dev.rats159.lox.optimizing;
+
+import dev.rats159.lox.constructs.LoxNumber;
+import dev.rats159.lox.lexing.TokenType;
+import dev.rats159.lox.parsing.Expression;
+import dev.rats159.lox.parsing.Statement;
+
+/**
+ * Replaces the handful of node shapes that make up most of a hot loop with single nodes the interpreter can run in
+ * one step:
+ * <ul>
+ *    <li>{@code i < n} and {@code i < 10} become {@link Expression.Comparison}</li>
+ *    <li>{@code i = i + 1} becomes {@link Expression.CompoundAssignment}</li>
+ *    <li>{@code object.method(args)} becomes {@link Expression.Invoke}</li>
+ *    <li>{@code print(value);} becomes {@link Statement.Print}</li>
+ * </ul>
+ * Every fused node falls back to the general behaviour when the values involved aren't the expected ones, e.g. when
+ * {@code print} has been redefined. Has to run before the resolver.
+ */
+public class SuperinstructionFuser extends AstRewriter {
+
+   @Override
+   public Expression visitBinaryExpression(Expression.Binary expression) {
+      Expression.Binary binary = (Expression.Binary) super.visitBinaryExpression(expression);
+
+      boolean comparison = switch (binary.operator().type()) {
+         case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL, BANG_EQUAL -> true;
+         default -> false;
+      };
+
+      if (comparison
+        && binary.left() instanceof Expression.Variable left
+        && (binary.right() instanceof Expression.Variable || binary.right() instanceof Expression.Literal)) {
+         return new Expression.Comparison(left, binary.operator(), binary.right());
+      }
+
+      return binary;
+   }
+
+   @Override
+   public Expression visitAssignmentExpression(Expression.Assignment assignment) {
+      if (assignment.value() instanceof Expression.Binary binary
+        && (binary.operator().type() == TokenType.PLUS || binary.operator().type() == TokenType.MINUS)
+        && binary.left() instanceof Expression.Variable read
+        && read.name().lexeme().equals(assignment.name().lexeme())
+        && binary.right() instanceof Expression.Literal delta
+        && delta.value() instanceof LoxNumber) {
+         return new Expression.CompoundAssignment(assignment.name(), binary.operator(), delta, false);
+      }
+
+      return super.visitAssignmentExpression(assignment);
+   }
+
+   @Override
+   public Expression visitCallExpression(Expression.Call call) {
+      Expression.Call rewritten = (Expression.Call) super.visitCallExpression(call);
+
+      if (rewritten.callee() instanceof Expression.Get get) {
+         return new Expression.Invoke(get.object(), get.name(), rewritten.paren(), rewritten.args());
+      }
+
+      return rewritten;
+   }
+
+   @Override
+   public Statement visitExpressionStatement(Statement.ExpressionStatement statement) {
+      if (statement.expression() instanceof Expression.Call call
+        && call.callee() instanceof Expression.Variable callee
+        && callee.name().lexeme().equals("print")
+        && call.args().size() == 1) {
+         return new Statement.Print(callee, call.paren(), rewrite(call.args().getFirst()));
+      }
+
+      return super.visitExpressionStatement(statement);
+   }
+}
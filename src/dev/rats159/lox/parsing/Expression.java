@@ -1,11 +1,12 @@
 package dev.rats159.lox.parsing;
 
+import dev.rats159.lox.constructs.LoxNil;
 import dev.rats159.lox.constructs.LoxObject;
 import dev.rats159.lox.lexing.Token;
 
 import java.util.List;
 
-public sealed interface Expression permits Expression.Assignment, Expression.Binary, Expression.Call, Expression.Get, Expression.Grouping, Expression.Literal, Expression.Logical, Expression.Set, Expression.Super, Expression.This, Expression.Unary, Expression.Variable {
+public sealed interface Expression permits Expression.Assignment, Expression.Binary, Expression.Call, Expression.Comparison, Expression.Get, Expression.Grouping, Expression.CompoundAssignment, Expression.CompoundSet, Expression.Hoisted, Expression.Interpolation, Expression.Invoke, Expression.Literal, Expression.Logical, Expression.Reduced, Expression.Set, Expression.Super, Expression.This, Expression.Unary, Expression.Variable {
    <R> R accept(Visitor<R> visitor);
 
 
@@ -101,6 +102,96 @@ public sealed interface Expression permits Expression.Assignment, Expression.Bin
       }
    }
 
+   /**
+    * An expression whose value does not change between iterations of the loop around it. The value is computed the
+    * first time the expression is reached and stored in the hidden loop-local {@code slot}, which is reset to
+    * {@link #EMPTY} every time the loop is entered.
+    */
+   record Hoisted(Token slot, Expression inner) implements Expression {
+      /**
+       * What a slot holds until its expression has been computed. Nil is a value like any other, so it can't be used
+       * to mark an empty slot.
+       */
+      public static final LoxObject EMPTY = new LoxNil();
+
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitHoistedExpression(this);
+      }
+   }
+
+   /**
+    * A binary operation with a constant number on the right that has a cheaper equivalent when the left side is a
+    * number. Anything else falls back to the regular operator with {@code constant}.
+    */
+   record Reduced(Expression operand, Token operator, Literal constant, Reduction reduction) implements Expression {
+      public enum Reduction {
+         IDENTITY, // x * 1, x / 1, x - 0
+         DOUBLE,   // x * 2
+         HALVE,    // x / 2
+         FRACTION  // x % 1
+      }
+
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitReducedExpression(this);
+      }
+   }
+
+   /**
+    * A comparison between a variable and another variable or a literal, like {@code i < n}.
+    */
+   record Comparison(Variable left, Token operator, Expression right) implements Expression {
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitComparisonExpression(this);
+      }
+   }
+
+   /**
+    * A property read that is called straight away, like {@code object.name(args)}. Methods are called without
+    * creating a bound function first.
+    */
+   record Invoke(Expression object, Token name, Token paren, List<Expression> args) implements Expression {
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitInvokeExpression(this);
+      }
+   }
+
+   /**
+    * {@code name += value}, {@code name -= value}, {@code ++name} and {@code name++} (and the same with minus). The
+    * value is evaluated first, then the variable is read and written back in one go. Postfix forms evaluate to the
+    * old value.
+    */
+   record CompoundAssignment(Token name, Token operator, Expression value, boolean postfix) implements Expression {
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitCompoundAssignmentExpression(this);
+      }
+   }
+
+   /**
+    * The same as {@link CompoundAssignment}, but for a field: {@code object.name += value} and friends.
+    */
+   record CompoundSet(Expression object, Token name, Token operator, Expression value, boolean postfix) implements Expression {
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitCompoundSetExpression(this);
+      }
+   }
+
+   /**
+    * A string with `${...}` in it, like {@code "Hello ${name}!"}. Each part is evaluated in order and their text
+    * joined into a single new string; {@code start} is the token of the text before the first `${`.
+    */
+   record Interpolation(Token start, List<Expression> parts) implements Expression {
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitInterpolationExpression(this);
+      }
+   }
+
    interface Visitor<T> {
       T visitBinaryExpression(Binary expression);
       T visitGroupingExpression(Grouping expression);
@@ -114,5 +205,12 @@ public sealed interface Expression permits Expression.Assignment, Expression.Bin
       T visitSetExpression(Set set);
       T visitThisExpression(This thisExpression);
       T visitSuperExpression(Super superExpression);
+      T visitHoistedExpression(Hoisted hoisted);
+      T visitReducedExpression(Reduced reduced);
+      T visitComparisonExpression(Comparison comparison);
+      T visitInvokeExpression(Invoke invoke);
+      T visitCompoundAssignmentExpression(CompoundAssignment assignment);
+      T visitCompoundSetExpression(CompoundSet set);
+      T visitInterpolationExpression(Interpolation interpolation);
    }
 }
@@ -1,26 +1,30 @@
 package dev.rats159.lox.parsing;
 
-import dev.rats159.lox.Lox;
 import dev.rats159.lox.constructs.LoxBoolean;
 import dev.rats159.lox.constructs.LoxNil;
+import dev.rats159.lox.constructs.LoxNumber;
+import dev.rats159.lox.constructs.LoxString;
+import dev.rats159.lox.errors.Diagnostics;
 import dev.rats159.lox.lexing.Token;
 import dev.rats159.lox.lexing.TokenType;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import static dev.rats159.lox.lexing.TokenType.*;
 
 public class Parser {
+   @SuppressWarnings("serial") // Never serialized
    private static class ParseError extends RuntimeException {
    }
 
    private final List<Token> tokens;
+   private final Diagnostics diagnostics;
    private int current = 0;
 
-   public Parser(List<Token> tokens) {
+   public Parser(List<Token> tokens, Diagnostics diagnostics) {
       this.tokens = tokens;
+      this.diagnostics = diagnostics;
    }
 
    public List<Statement> parse() {
@@ -156,24 +160,7 @@ public class Parser {
 
       Statement body = statement();
 
-      if (increment != null) {
-         body = new Statement.Block(
-           Arrays.asList(
-             body,
-             new Statement.ExpressionStatement(increment)
-           )
-         );
-      }
-
-
-      if (condition == null) condition = new Expression.Literal(new LoxBoolean(true));
-      body = new Statement.While(condition, body);
-
-      if (initializer != null) {
-         body = new Statement.Block(Arrays.asList(initializer, body));
-      }
-
-      return body;
+      return new Statement.For(initializer, condition, increment, body);
    }
 
    private Statement ifStatement() {
@@ -259,11 +246,27 @@ public class Parser {
          }
 
          error(equals, "Invalid assignment target.");
+      } else if (match(PLUS_EQUAL, MINUS_EQUAL)) {
+         Token operator = previous();
+         Expression value = assignment();
+
+         return update(expr, operator, value, false);
       }
 
       return expr;
    }
 
+   private Expression update(Expression target, Token operator, Expression value, boolean postfix) {
+      if (target instanceof Expression.Variable var) {
+         return new Expression.CompoundAssignment(var.name(), operator, value, postfix);
+      } else if (target instanceof Expression.Get get) {
+         return new Expression.CompoundSet(get.object(), get.name(), operator, value, postfix);
+      }
+
+      error(operator, "Invalid assignment target.");
+      return target;
+   }
+
    private Expression equality() {
       Expression expr = comparison();
 
@@ -319,7 +322,23 @@ public class Parser {
          return new Expression.Unary(operator, right);
       }
 
-      return call();
+      if (match(PLUS_PLUS, MINUS_MINUS)) {
+         Token operator = previous();
+         Expression target = unary();
+         return update(target, operator, new Expression.Literal(new LoxNumber(1)), false);
+      }
+
+      return postfix();
+   }
+
+   private Expression postfix() {
+      Expression expr = call();
+
+      if (match(PLUS_PLUS, MINUS_MINUS)) {
+         return update(expr, previous(), new Expression.Literal(new LoxNumber(1)), true);
+      }
+
+      return expr;
    }
 
    private Expression call() {
@@ -365,6 +384,10 @@ public class Parser {
          return new Expression.Literal(previous().literal());
       }
 
+      if (match(INTERPOLATION)) {
+         return interpolation();
+      }
+
       if (match(SUPER)) {
          Token keyword = previous();
          consume(DOT, "Expect '.' after super");
@@ -390,6 +413,35 @@ public class Parser {
    }
 
 
+   /**
+    * The rest of a string with `${...}` in it, once its first INTERPOLATION token has been matched. Every
+    * INTERPOLATION is followed by an expression, and the string ends with the STRING token of the text after the
+    * last one.
+    */
+   private Expression interpolation() {
+      Token start = previous();
+      List<Expression> parts = new ArrayList<>();
+
+      Token text = start;
+      while (true) {
+         text(parts, text);
+         parts.add(expression());
+
+         if (match(INTERPOLATION)) {
+            text = previous();
+         } else {
+            text(parts, consume(STRING, "Expect '}' after interpolated expression."));
+            return new Expression.Interpolation(start, parts);
+         }
+      }
+   }
+
+   private void text(List<Expression> parts, Token text) {
+      if (((LoxString) text.literal()).length() > 0) {
+         parts.add(new Expression.Literal(text.literal()));
+      }
+   }
+
    private Token consume(TokenType type, String message) {
       if (check(type)) return advance();
 
@@ -397,7 +449,7 @@ public class Parser {
    }
 
    private ParseError error(Token token, String message) {
-      Lox.error(token, message);
+      diagnostics.error(token, message);
       return new ParseError();
    }
 
@@ -5,7 +5,7 @@ import dev.rats159.lox.lexing.Token;
 import javax.swing.plaf.nimbus.State;
 import java.util.List;
 
-public sealed interface Statement permits Statement.Block, Statement.Class, Statement.ExpressionStatement, Statement.Function, Statement.If, Statement.Return, Statement.VariableStatement, Statement.While {
+public sealed interface Statement permits Statement.Block, Statement.Class, Statement.ExpressionStatement, Statement.For, Statement.Function, Statement.If, Statement.Print, Statement.Return, Statement.VariableStatement, Statement.While {
    interface Visitor<T> {
       T visitExpressionStatement(ExpressionStatement statement);
 
@@ -17,11 +17,15 @@ public sealed interface Statement permits Statement.Block, Statement.Class, Stat
 
       T visitWhileStatement(While whileStatement);
 
+      T visitForStatement(For forStatement);
+
       T visitFunction(Function function);
 
       T visitReturnStatement(Return returnStatement);
 
       T visitClassStatement(Class classStatement);
+
+      T visitPrintStatement(Print printStatement);
    }
 
    <R> R accept(Visitor<R> visitor);
@@ -41,7 +45,15 @@ public sealed interface Statement permits Statement.Block, Statement.Class, Stat
       }
    }
 
-   record Block(List<Statement> statements) implements Statement{
+   /**
+    * @param declares whether any statement directly inside the block declares something. Blocks that don't are run
+    *                 in the surrounding scope instead of getting their own.
+    */
+   record Block(List<Statement> statements, boolean declares) implements Statement{
+      public Block(List<Statement> statements) {
+         this(statements, statements.stream().anyMatch(statement ->
+           statement instanceof VariableStatement || statement instanceof Function || statement instanceof Class));
+      }
 
       @Override
       public <R> R accept(Visitor<R> visitor) {
@@ -65,6 +77,18 @@ public sealed interface Statement permits Statement.Block, Statement.Class, Stat
       }
    }
 
+   /**
+    * The initializer, condition and increment can each be null. A `var` initializer gets one scope for the whole
+    * loop.
+    */
+   record For(Statement initializer, Expression condition, Expression increment, Statement body) implements Statement{
+
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitForStatement(this);
+      }
+   }
+
    record Function(Token name, List<Token> parameters, List<Statement> body) implements Statement{
 
       @Override
@@ -81,6 +105,17 @@ public sealed interface Statement permits Statement.Block, Statement.Class, Stat
       }
    }
 
+   /**
+    * A call to the global {@code print} with a single argument, used as a statement.
+    */
+   record Print(Expression.Variable callee, Token paren, Expression value) implements Statement {
+
+      @Override
+      public <R> R accept(Visitor<R> visitor) {
+         return visitor.visitPrintStatement(this);
+      }
+   }
+
    record Class(Token name, Expression.Variable superclass, List<Statement.Function> methods) implements Statement{
 
       @Override
@@ -0,0 +1,50 @@
+package dev.rats159.lox.resolving;
+
+import dev.rats159.lox.interpreting.ChunkCache;
+import dev.rats159.lox.parsing.Expression;
+
+import java.util.*;
+
+/**
+ * What the {@link Resolver} found out about one program: how many environments out each local variable lives, and
+ * which calls are in tail position. Only written while resolving, so afterwards it can be read by any number of
+ * threads at once.
+ * <p>
+ * Every function carries the resolution of the program that declared it, so it can still be called after other
+ * programs have been run in the same context. That makes it the place to keep what the program is compiled to as
+ * well, so that is done once however many contexts run it.
+ */
+public final class Resolution {
+   private final Map<Expression, Integer> locals = new HashMap<>();
+   private final Set<Expression> tailCalls = Collections.newSetFromMap(new IdentityHashMap<>());
+   private final ChunkCache chunks = new ChunkCache();
+
+   void resolve(Expression expression, int depth) {
+      locals.put(expression, depth);
+   }
+
+   /**
+    * Marks a call as the value of a `return`, so it can reuse the returning function's frame.
+    */
+   void resolveTailCall(Expression call) {
+      tailCalls.add(call);
+   }
+
+   /**
+    * How many environments out the resolver found this expression's variable, or null for globals.
+    */
+   public Integer depth(Expression expression) {
+      return locals.get(expression);
+   }
+
+   public boolean isTailCall(Expression call) {
+      return tailCalls.contains(call);
+   }
+
+   /**
+    * The stack interpreter's compiled form of this program.
+    */
+   public ChunkCache chunks() {
+      return chunks;
+   }
+}
@@ -1,7 +1,6 @@
 package dev.rats159.lox.resolving;
 
-import dev.rats159.lox.Lox;
-import dev.rats159.lox.interpreting.Interpreter;
+import dev.rats159.lox.errors.Diagnostics;
 import dev.rats159.lox.lexing.Token;
 import dev.rats159.lox.parsing.Expression;
 import dev.rats159.lox.parsing.Statement;
@@ -9,7 +8,8 @@ import dev.rats159.lox.parsing.Statement;
 import java.util.*;
 
 public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
-   private final Interpreter interpreter;
+   private final Resolution resolution;
+   private final Diagnostics diagnostics;
    private final Stack<Map<String,Boolean>> scopes = new Stack<>();
    private FunctionType currentFunction = FunctionType.NONE;
    private ClassType currentClass = ClassType.NONE;
@@ -33,8 +33,9 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
 
 
-   public Resolver(Interpreter interpreter) {
-      this.interpreter = interpreter;
+   public Resolver(Resolution resolution, Diagnostics diagnostics) {
+      this.resolution = resolution;
+      this.diagnostics = diagnostics;
    }
 
    @Override
@@ -65,7 +66,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
    public Void visitVariableExpression(Expression.Variable var) {
       if (!scopes.isEmpty() &&
         scopes.peek().get(var.name().lexeme()) == Boolean.FALSE) {
-         Lox.error(var.name(),
+         diagnostics.error(var.name(),
            "Can't read local variable in its own initializer.");
       }
 
@@ -123,6 +124,11 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
    @Override
    public Void visitBlockStatement(Statement.Block block) {
+      if (!block.declares()) {
+         resolve(block.statements()); // The interpreter doesn't give these blocks their own environment
+         return null;
+      }
+
       beginScope();
       resolve(block.statements());
       endScope();
@@ -146,6 +152,30 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
       return null;
    }
 
+   @Override
+   public Void visitForStatement(Statement.For forStatement) {
+      boolean scoped = forStatement.initializer() instanceof Statement.VariableStatement;
+      if (scoped) {
+         beginScope();
+      }
+
+      if (forStatement.initializer() != null) {
+         resolve(forStatement.initializer());
+      }
+      if (forStatement.condition() != null) {
+         resolve(forStatement.condition());
+      }
+      resolve(forStatement.body());
+      if (forStatement.increment() != null) {
+         resolve(forStatement.increment());
+      }
+
+      if (scoped) {
+         endScope();
+      }
+      return null;
+   }
+
    @Override
    public Void visitFunction(Statement.Function stmt) {
       declare(stmt.name());
@@ -171,27 +201,101 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
    @Override
    public Void visitSuperExpression(Expression.Super superExpression) {
       if(currentClass == ClassType.NONE){
-         Lox.error(superExpression.keyword(),"`super` must be used inside of a class");
+         diagnostics.error(superExpression.keyword(),"`super` must be used inside of a class");
       }else if (currentClass == ClassType.CLASS){
-         Lox.error(superExpression.keyword(), "`super` may only be used in classes with a superclass");
+         diagnostics.error(superExpression.keyword(), "`super` may only be used in classes with a superclass");
       }
       resolveLocal(superExpression,superExpression.keyword());
       return null;
    }
 
+   @Override
+   public Void visitHoistedExpression(Expression.Hoisted hoisted) {
+      resolve(hoisted.inner());
+      resolveLocal(hoisted, hoisted.slot());
+      return null;
+   }
+
+   @Override
+   public Void visitReducedExpression(Expression.Reduced reduced) {
+      resolve(reduced.operand());
+      return null;
+   }
+
+   @Override
+   public Void visitComparisonExpression(Expression.Comparison comparison) {
+      resolve(comparison.left());
+      resolve(comparison.right());
+      return null;
+   }
+
+   @Override
+   public Void visitInvokeExpression(Expression.Invoke invoke) {
+      resolve(invoke.object());
+
+      for (Expression arg : invoke.args()) {
+         resolve(arg);
+      }
+
+      return null;
+   }
+
+   @Override
+   public Void visitCompoundAssignmentExpression(Expression.CompoundAssignment assignment) {
+      if (!scopes.isEmpty() &&
+        scopes.peek().get(assignment.name().lexeme()) == Boolean.FALSE) {
+         diagnostics.error(assignment.name(),
+           "Can't read local variable in its own initializer.");
+      }
+
+      resolve(assignment.value());
+      resolveLocal(assignment, assignment.name());
+      return null;
+   }
+
+   @Override
+   public Void visitCompoundSetExpression(Expression.CompoundSet set) {
+      resolve(set.value());
+      resolve(set.object());
+      return null;
+   }
+
+   @Override
+   public Void visitInterpolationExpression(Expression.Interpolation interpolation) {
+      for (Expression part : interpolation.parts()) {
+         resolve(part);
+      }
+      return null;
+   }
+
+   @Override
+   public Void visitPrintStatement(Statement.Print printStatement) {
+      resolve(printStatement.callee());
+      resolve(printStatement.value());
+      return null;
+   }
+
    @Override
    public Void visitReturnStatement(Statement.Return returnStatement) {
 
       if (currentFunction == FunctionType.NONE){
-         Lox.error(returnStatement.keyword(), "Cannot return from top-level code.");
+         diagnostics.error(returnStatement.keyword(), "Cannot return from top-level code.");
       }
 
       if(returnStatement.value() != null){
          if (currentFunction == FunctionType.INITIALIZER) {
-            Lox.error(returnStatement.keyword(),
+            diagnostics.error(returnStatement.keyword(),
                     "Can't return a value from an initializer.");
          }
          resolve(returnStatement.value());
+
+         Expression value = returnStatement.value();
+         while (value instanceof Expression.Grouping grouping) {
+            value = grouping.inner();
+         }
+         if (value instanceof Expression.Call || value instanceof Expression.Invoke) {
+            resolution.resolveTailCall(value);
+         }
       }
       return null;
    }
@@ -206,7 +310,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
       if (classStatement.superclass() != null) {
          if(classStatement.name().lexeme().equals(classStatement.superclass().name().lexeme())){
-            Lox.error(classStatement.superclass().name(),"A class can't inherit from itself");
+            diagnostics.error(classStatement.superclass().name(),"A class can't inherit from itself");
          }
          currentClass = ClassType.SUBCLASS;
          resolve(classStatement.superclass());
@@ -265,7 +369,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
       var scope = scopes.peek();
       if (scope.containsKey(name.lexeme())) {
-         Lox.error(name,
+         diagnostics.error(name,
            "Already a variable with this name in this scope.");
       }
 
@@ -283,7 +387,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
    private void resolveLocal(Expression expr, Token name) {
       for (int i = scopes.size() - 1; i >= 0; i--) {
          if (scopes.get(i).containsKey(name.lexeme())) {
-            this.interpreter.resolve(expr, scopes.size() - 1 - i);
+            this.resolution.resolve(expr, scopes.size() - 1 - i);
             return;
          }
       }